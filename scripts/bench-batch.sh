@@ -0,0 +1,80 @@
+#!/bin/bash
+# Benchmark de POST /orders/batch contre des POST /orders unitaires (voir docs/benchmarks.md).
+#
+# Prérequis : hey (https://github.com/rakyll/hey), curl
+#             docker compose up -d users-orders-mock mongodb
+#
+# Usage : ./scripts/bench-batch.sh [options Spring supplémentaires...]
+#   ORDERS=20000 BATCH_SIZES="10 50 100" CONCURRENCY=50 ./scripts/bench-batch.sh
+
+set -e
+
+EXTRA_ARGS=("$@")
+
+JAR_PATH="target/services_orders-0.0.1-SNAPSHOT.jar"
+PORT=${PORT:-8080}
+MOCK=${MOCK:-http://localhost:1080}
+MONGO_URL=${MONGO_URL:-mongodb://localhost:27017/data}
+ORDERS=${ORDERS:-20000}
+BATCH_SIZES=${BATCH_SIZES:-"10 50 100"}
+CONCURRENCY=${CONCURRENCY:-50}
+OUT_DIR=${OUT_DIR:-target/bench}
+
+BODY="{\"customer\":\"$MOCK/customers/57a98d98e4b00679b4a830af\",\
+\"address\":\"$MOCK/addresses/57a98d98e4b00679b4a830ad\",\
+\"card\":\"$MOCK/cards/57a98d98e4b00679b4a830ae\",\
+\"items\":\"$MOCK/carts/579f21ae98684924944651bf/items\"}"
+
+if [ ! -f "$JAR_PATH" ]; then
+  echo "=== 🛠️ Compilation du projet Maven ==="
+  mvn -q clean package -DskipTests
+fi
+
+mkdir -p "$OUT_DIR"
+
+echo "=== 🚀 Démarrage du service ==="
+java -jar "$JAR_PATH" \
+  --port="$PORT" \
+  --spring.data.mongodb.uri="$MONGO_URL" \
+  --orders.payment-uri="$MOCK/payment" \
+  --orders.shipping-uri="$MOCK/shipping" \
+  --simulate.latency=false --simulate.cpu=false --simulate.leak=false \
+  --simulate.thread=false --simulate.deadlock=false --simulate.error=false \
+  --logging.level.root=WARN --logging.level.sockshop.orders=WARN \
+  --logging.level.org.springframework.web=WARN \
+  "${EXTRA_ARGS[@]}" > "$OUT_DIR/app-batch.log" 2>&1 &
+PID=$!
+trap "kill $PID 2>/dev/null" EXIT
+
+until curl -sf "http://localhost:$PORT/health" > /dev/null; do sleep 1; done
+
+# Chauffe du JIT et des pools avant la mesure
+hey -z 15s -c "$CONCURRENCY" -m POST -T application/json -d "$BODY" "http://localhost:$PORT/orders" > /dev/null
+
+RESULT="$OUT_DIR/result-batch.txt"
+echo "batch_size requests orders_per_s p99_s" > "$RESULT"
+
+# Même nombre total de commandes : ORDERS requêtes unitaires, puis ORDERS/taille requêtes batch
+hey -n "$ORDERS" -c "$CONCURRENCY" -m POST -T application/json -d "$BODY" \
+  "http://localhost:$PORT/orders" > "$OUT_DIR/hey-batch-1.txt"
+rps=$(awk '/Requests\/sec/ {print $2}' "$OUT_DIR/hey-batch-1.txt")
+p99=$(awk '/99% in/ {print $3}' "$OUT_DIR/hey-batch-1.txt")
+echo "1 $ORDERS $rps $p99" | tee -a "$RESULT"
+
+for size in $BATCH_SIZES; do
+  batch="[$BODY"
+  for _ in $(seq 2 "$size"); do batch="$batch,$BODY"; done
+  batch="$batch]"
+  requests=$((ORDERS / size))
+  hey -n "$requests" -c "$CONCURRENCY" -m POST -T application/json -d "$batch" \
+    "http://localhost:$PORT/orders/batch" > "$OUT_DIR/hey-batch-$size.txt"
+  rps=$(awk '/Requests\/sec/ {print $2}' "$OUT_DIR/hey-batch-$size.txt")
+  p99=$(awk '/99% in/ {print $3}' "$OUT_DIR/hey-batch-$size.txt")
+  echo "$size $requests $(awk -v r="$rps" -v s="$size" 'BEGIN {printf "%.1f", r * s}') $p99" | tee -a "$RESULT"
+done
+
+kill $PID
+wait $PID 2>/dev/null || true
+trap - EXIT
+
+echo "✅ Résultats dans $RESULT"
@@ -0,0 +1,91 @@
+#!/bin/bash
+# Benchmark de POST /orders (voir docs/benchmarks.md).
+#
+# Prérequis : JDK 21+, hey (https://github.com/rakyll/hey), curl, jq
+#             docker compose up -d users-orders-mock mongodb
+#
+# Usage : ./scripts/bench.sh [platform|virtual|reactive|both|all] [options Spring supplémentaires...]
+#   DURATION=60s LEVELS="50 100 200 400 800" ./scripts/bench.sh both
+#   LEVELS=1000 ./scripts/bench.sh all
+
+set -e
+
+MODE=${1:-both}
+shift || true
+EXTRA_ARGS=("$@")
+
+JAR_PATH="target/services_orders-0.0.1-SNAPSHOT.jar"
+PORT=${PORT:-8080}
+MOCK=${MOCK:-http://localhost:1080}
+MONGO_URL=${MONGO_URL:-mongodb://localhost:27017/data}
+DURATION=${DURATION:-60s}
+LEVELS=${LEVELS:-"50 100 200 400 800"}
+OUT_DIR=${OUT_DIR:-target/bench}
+
+BODY="{\"customer\":\"$MOCK/customers/57a98d98e4b00679b4a830af\",\
+\"address\":\"$MOCK/addresses/57a98d98e4b00679b4a830ad\",\
+\"card\":\"$MOCK/cards/57a98d98e4b00679b4a830ae\",\
+\"items\":\"$MOCK/carts/579f21ae98684924944651bf/items\"}"
+
+if [ ! -f "$JAR_PATH" ]; then
+  echo "=== 🛠️ Compilation du projet Maven ==="
+  mvn -q clean package -DskipTests
+fi
+
+mkdir -p "$OUT_DIR"
+
+run_mode() {
+  local mode=$1
+  local virtual=false
+  local pipeline=servlet
+  [ "$mode" = "virtual" ] && virtual=true
+  [ "$mode" = "reactive" ] && pipeline=reactive
+
+  echo "=== 🚀 Démarrage du service ($mode) ==="
+  java -jar "$JAR_PATH" \
+    --port="$PORT" \
+    --spring.data.mongodb.uri="$MONGO_URL" \
+    --orders.payment-uri="$MOCK/payment" \
+    --orders.shipping-uri="$MOCK/shipping" \
+    --spring.threads.virtual.enabled="$virtual" \
+    --orders.pipeline="$pipeline" \
+    --simulate.latency=false --simulate.cpu=false --simulate.leak=false \
+    --simulate.thread=false --simulate.deadlock=false --simulate.error=false \
+    --logging.level.root=WARN --logging.level.sockshop.orders=WARN \
+    --logging.level.org.springframework.web=WARN \
+    "${EXTRA_ARGS[@]}" > "$OUT_DIR/app-$mode.log" 2>&1 &
+  local pid=$!
+  trap "kill $pid 2>/dev/null" EXIT
+
+  until curl -sf "http://localhost:$PORT/health" > /dev/null; do sleep 1; done
+
+  # Chauffe du JIT et des pools avant la mesure
+  hey -z 15s -c 50 -m POST -T application/json -d "$BODY" "http://localhost:$PORT/orders" > /dev/null
+
+  local result="$OUT_DIR/result-$mode.txt"
+  echo "mode concurrency rps p99_s non_201 peak_threads" > "$result"
+  for c in $LEVELS; do
+    hey -z "$DURATION" -c "$c" -m POST -T application/json -d "$BODY" \
+      "http://localhost:$PORT/orders" > "$OUT_DIR/hey-$mode-$c.txt"
+    local rps p99 total ok peak
+    rps=$(awk '/Requests\/sec/ {print $2}' "$OUT_DIR/hey-$mode-$c.txt")
+    p99=$(awk '/99% in/ {print $3}' "$OUT_DIR/hey-$mode-$c.txt")
+    total=$(awk '/^  \[[0-9]+\]/ {n += $2} END {print n + 0}' "$OUT_DIR/hey-$mode-$c.txt")
+    ok=$(awk '/^  \[201\]/ {print $2}' "$OUT_DIR/hey-$mode-$c.txt")
+    peak=$(curl -s "http://localhost:$PORT/actuator/metrics/jvm.threads.peak" | jq '.measurements[0].value')
+    echo "$mode $c $rps $p99 $((total - ${ok:-0})) $peak" | tee -a "$result"
+  done
+
+  kill $pid
+  wait $pid 2>/dev/null || true
+  trap - EXIT
+}
+
+case "$MODE" in
+  platform|virtual|reactive) run_mode "$MODE" ;;
+  both) run_mode platform; run_mode virtual ;;
+  all) run_mode platform; run_mode virtual; run_mode reactive ;;
+  *) echo "❌ Mode inconnu : $MODE (platform|virtual|reactive|both|all)"; exit 1 ;;
+esac
+
+echo "✅ Résultats dans $OUT_DIR/result-*.txt"
@@ -0,0 +1,49 @@
+package sockshop.orders.controllers;
+
+import org.openjdk.jmh.annotations.*;
+
+import sockshop.orders.entities.Item;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Calculs faits pour chaque commande dans OrdersController.newOrder
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderCalculationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Cart {
+        @Param({"1", "10", "100"})
+        private int itemCount;
+
+        private List<Item> items;
+
+        @Setup
+        public void setUp() {
+            items = new ArrayList<>();
+            for (int i = 0; i < itemCount; i++) {
+                items.add(new Item("item-" + i, "sock-" + i, i % 3 + 1, 9.99F + i));
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Href {
+        private final String customerHref = "http://users-orders-mock:1080/customers/57a98d98e4b00679b4a830af";
+    }
+
+    @Benchmark
+    public float calculateTotal(Cart cart) {
+        return OrdersController.calculateTotal(cart.items);
+    }
+
+    @Benchmark
+    public String parseId(Href href) {
+        return OrdersController.parseId(href.customerHref);
+    }
+}
@@ -0,0 +1,51 @@
+package sockshop.orders.middleware;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.TimeUnit;
+
+// Coût de l'intercepteur de métriques HTTP, appelé sur chaque requête, comparé à l'ancienne implémentation.
+// Lancer avec -prof gc pour voir les allocations par requête.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HTTPMonitoringInterceptorBenchmark {
+
+    private HTTPMonitoringInterceptor interceptor;
+
+    private LegacyHTTPMonitoringInterceptor legacyInterceptor;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        interceptor = new HTTPMonitoringInterceptor(new SimpleMeterRegistry(), 100);
+        legacyInterceptor = new LegacyHTTPMonitoringInterceptor(new SimpleMeterRegistry());
+        request = new MockHttpServletRequest("GET", "/orders/5f0c6f3e9d1b2a0001a1b2c3");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/{repository}/{id}");
+        response = new MockHttpServletResponse();
+        response.setStatus(200);
+    }
+
+    @Benchmark
+    public void requestLifecycle() throws Exception {
+        interceptor.preHandle(request, response, null);
+        interceptor.postHandle(request, response, null, null);
+        interceptor.afterCompletion(request, response, null, null);
+    }
+
+    @Benchmark
+    public void legacyRequestLifecycle() {
+        legacyInterceptor.preHandle(request);
+        legacyInterceptor.postHandle(request, response);
+    }
+}
@@ -0,0 +1,40 @@
+package sockshop.orders.middleware;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+// Ancienne mesure de HTTPMonitoringInterceptor (Timer construit et enregistré à chaque requête, tag sur l'URI brute),
+// gardée uniquement comme point de comparaison pour HTTPMonitoringInterceptorBenchmark
+class LegacyHTTPMonitoringInterceptor {
+
+    private static final String START_TIME = "startTime";
+
+    private final MeterRegistry meterRegistry;
+
+    LegacyHTTPMonitoringInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    void preHandle(HttpServletRequest request) {
+        request.setAttribute(START_TIME, System.nanoTime());
+    }
+
+    void postHandle(HttpServletRequest request, HttpServletResponse response) {
+        Long start = (Long) request.getAttribute(START_TIME);
+        if (start != null) {
+            long elapsed = System.nanoTime() - start;
+            Timer.builder("http_server_requests_custom")
+                    .description("Custom HTTP request latency")
+                    .tags("method", request.getMethod(),
+                          "uri", request.getRequestURI(),
+                          "status", String.valueOf(response.getStatus()),
+                          "host", request.getServerName())
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package sockshop.orders.repositories;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import sockshop.orders.entities.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Format historique contre format compact (orders.mongo.schema) côté service : écriture = mapping + encodage BSON
+// de ce qu'envoie un insert, lecture = décodage BSON + mapping d'un document reçu. Les tailles BSON sont affichées
+// au setup ; le gain côté serveur (documents plus petits en cache WiredTiger, sur disque et sur le réseau) n'est
+// pas mesuré ici.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactOrderBenchmark {
+
+    private static final Codec<Document> CODEC = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+
+    @Param({"1", "10", "100"})
+    private int itemCount;
+
+    private MappingMongoConverter converter;
+
+    private CustomerOrder order;
+
+    private RawBsonDocument legacyBson;
+
+    private RawBsonDocument compactBson;
+
+    @Setup
+    public void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(new EmptyDbRefResolver(), mappingContext);
+        converter.afterPropertiesSet();
+
+        Address address = new Address("57a98d98e4b00679b4a830ad", "246", "Whitelees Road", "Glasgow", "G67 3DL", "United Kingdom");
+        Card card = new Card("57a98d98e4b00679b4a830ae", "5953580604169678", "08/19", "678");
+        Customer customer = new Customer("57a98d98e4b00679b4a830af", "Eve", "Berger", "Eve_Berger",
+                new ArrayList<>(), new ArrayList<>());
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new Item("5f0c6f3e9d1b2a0001a1b" + String.format("%03d", i), "sock-" + i, i % 3 + 1, 9.99F + i));
+        }
+        order = new CustomerOrder("5f0c6f3e9d1b2a0001a1b2c3", "57a98d98e4b00679b4a830af", customer,
+                address, card, items, new Shipment("57a98d98e4b00679b4a830af"), new Date(), 42.0F);
+
+        legacyBson = writeLegacy();
+        compactBson = writeCompact();
+        System.out.printf("%n%d items: BSON %d B (legacy) / %d B (compact)%n",
+                itemCount, legacyBson.getByteBuffer().remaining(), compactBson.getByteBuffer().remaining());
+    }
+
+    @Benchmark
+    public RawBsonDocument writeLegacy() {
+        Document document = new Document();
+        converter.write(order, document);
+        return new RawBsonDocument(document, CODEC);
+    }
+
+    @Benchmark
+    public RawBsonDocument writeCompact() {
+        Document document = new Document();
+        converter.write(order, document);
+        CompactOrderSchema.compact(document);
+        return new RawBsonDocument(document, CODEC);
+    }
+
+    @Benchmark
+    public CustomerOrder readLegacy() {
+        return converter.read(CustomerOrder.class, legacyBson.decode(CODEC));
+    }
+
+    @Benchmark
+    public CustomerOrder readCompact() {
+        Document document = compactBson.decode(CODEC);
+        CompactOrderSchema.expand(document);
+        return converter.read(CustomerOrder.class, document);
+    }
+}
@@ -0,0 +1,41 @@
+package sockshop.orders.repositories;
+
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.convert.DbRefProxyHandler;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.DbRefResolverCallback;
+import org.springframework.data.mongodb.core.convert.ReferenceLookupDelegate;
+import org.springframework.data.mongodb.core.convert.ReferenceResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Les listes @DBRef du customer sont vides dans les commandes enregistrées : on les résout sans base
+// (en production, chaque référence non vide coûterait en plus une lecture Mongo à la sérialisation)
+class EmptyDbRefResolver implements DbRefResolver {
+
+    @Override
+    public Object resolveDbRef(MongoPersistentProperty property, DBRef dbref, DbRefResolverCallback callback,
+                               DbRefProxyHandler proxyHandler) {
+        return property.isCollectionLike() ? new ArrayList<>() : null;
+    }
+
+    @Override
+    public Document fetch(DBRef dbRef) {
+        return null;
+    }
+
+    @Override
+    public List<Document> bulkFetch(List<DBRef> dbRefs) {
+        return List.of();
+    }
+
+    @Override
+    public Object resolveReference(MongoPersistentProperty property, Object source,
+                                   ReferenceLookupDelegate referenceLookupDelegate,
+                                   ReferenceResolver.MongoEntityReader entityReader) {
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+package sockshop.orders.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoClientSettings;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import sockshop.orders.entities.*;
+import sockshop.orders.resources.OrderSummary;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Coût côté service d'une commande lue dans Mongo puis renvoyée en JSON : document complet (GET /orders)
+// contre projection OrderSummary (GET /orders/summaries). Les tailles BSON et JSON sont affichées au setup.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderSummaryBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int itemCount;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private MappingMongoConverter converter;
+
+    private Document fullDocument;
+
+    private Document summaryDocument;
+
+    @Setup
+    public void setUp() throws Exception {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(new EmptyDbRefResolver(), mappingContext);
+        converter.afterPropertiesSet();
+
+        // Le customer renvoyé par le service users n'embarque ni adresses ni cartes (liens HAL seulement)
+        Address address = new Address("57a98d98e4b00679b4a830ad", "246", "Whitelees Road", "Glasgow", "G67 3DL", "United Kingdom");
+        Card card = new Card("57a98d98e4b00679b4a830ae", "5953580604169678", "08/19", "678");
+        Customer customer = new Customer("57a98d98e4b00679b4a830af", "Eve", "Berger", "Eve_Berger",
+                new ArrayList<>(), new ArrayList<>());
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new Item("item-" + i, "sock-" + i, i % 3 + 1, 9.99F + i));
+        }
+        Date date = new Date();
+        CustomerOrder order = new CustomerOrder("5f0c6f3e9d1b2a0001a1b2c3", "57a98d98e4b00679b4a830af", customer,
+                address, card, items, new Shipment("57a98d98e4b00679b4a830af"), date, 42.0F);
+
+        fullDocument = new Document();
+        converter.write(order, fullDocument);
+        // Ce que renvoie la projection de findSummariesAfter
+        summaryDocument = new Document("_id", order.getId())
+                .append("customerId", order.getCustomerId())
+                .append("date", date)
+                .append("total", 42.0F)
+                .append("itemCount", itemCount);
+
+        System.out.printf("%n%d items: BSON %d B (full) / %d B (summary), JSON %d B (full) / %d B (summary)%n",
+                itemCount, bsonSize(fullDocument), bsonSize(summaryDocument),
+                readFullOrder().length, readSummary().length);
+    }
+
+    @Benchmark
+    public byte[] readFullOrder() throws Exception {
+        return objectMapper.writeValueAsBytes(converter.read(CustomerOrder.class, fullDocument));
+    }
+
+    @Benchmark
+    public byte[] readSummary() throws Exception {
+        return objectMapper.writeValueAsBytes(converter.read(OrderSummary.class, summaryDocument));
+    }
+
+    static int bsonSize(Document document) {
+        return new RawBsonDocument(document, MongoClientSettings.getDefaultCodecRegistry().get(Document.class))
+                .getByteBuffer().remaining();
+    }
+}
@@ -0,0 +1,78 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Écriture directe (une commande par aller-retour, strict ou fast) contre GroupCommitter (orders.persistence.mode=group-commit)
+// face à un Mongo simulé : pool de connexions borné, chaque commit coûte commitMicros (aller-retour + attente du
+// write concern : ~0,5 ms pour w:1, quelques ms pour majority + journal entre zones) plus un coût par document.
+// Lancer avec -t 1 (requêtes isolées : la fenêtre s'ajoute à la latence) et -t 64 (requêtes concurrentes : le pool
+// sature en écriture directe, le group commit partage l'attente du write concern).
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupCommitBenchmark {
+
+    private static final int CONNECTIONS = 8;
+    private static final long DOCUMENT_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    @Param({"500", "3000"})
+    private long commitMicros;
+
+    private final Semaphore connections = new Semaphore(CONNECTIONS);
+
+    private GroupCommitter<Object> groupCommitter;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        groupCommitter = new GroupCommitter<>("benchmark-group-commit", this::insertMany, this::insertOne,
+                Duration.ofMillis(2), 64, 1024,
+                DistributionSummary.builder("batch").register(registry), Timer.builder("commit").register(registry));
+    }
+
+    @TearDown
+    public void tearDown() {
+        groupCommitter.stop();
+    }
+
+    @Benchmark
+    public Object direct() {
+        return insertOne(new Object());
+    }
+
+    @Benchmark
+    public Object groupCommit() {
+        return groupCommitter.submit(new Object()).join();
+    }
+
+    private Object insertOne(Object document) {
+        commit(1);
+        return document;
+    }
+
+    private List<Object> insertMany(List<Object> documents) {
+        commit(documents.size());
+        return documents;
+    }
+
+    private void commit(int documents) {
+        connections.acquireUninterruptibly();
+        try {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(commitMicros) + documents * DOCUMENT_NANOS);
+        } finally {
+            connections.release();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package sockshop.orders.services;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.*;
+import org.openjdk.jmh.annotations.*;
+
+import sockshop.orders.entities.*;
+import sockshop.orders.resources.PaymentRequest;
+import sockshop.orders.resources.PaymentResponse;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Attributs de span posés par POST /orders sur un span enregistré, selon orders.tracing.verbosity,
+// comparés à l'ancien code (toString de chaque entité et concaténation du log de paiement à chaque requête)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderSpanAttributesBenchmark {
+
+    @Param({"ids", "summary", "full"})
+    private String verbosity;
+
+    @Param({"1", "10", "100"})
+    private int itemCount;
+
+    private OrderSpanAttributes spanAttributes;
+
+    private Address address;
+    private Card card;
+    private Customer customer;
+    private List<Item> items;
+    private PaymentResponse paymentResponse;
+    private CustomerOrder order;
+
+    @Setup
+    public void setUp() {
+        spanAttributes = new OrderSpanAttributes(verbosity, 1.0);
+        address = new Address("57a98d98e4b00679b4a830ad", "246", "Whitelees Road", "Glasgow", "G67 3DL", "United Kingdom");
+        card = new Card("57a98d98e4b00679b4a830ae", "5953580604169678", "08/19", "678");
+        customer = new Customer("57a98d98e4b00679b4a830af", "Eve", "Berger", "Eve_Berger",
+                List.of(address), List.of(card));
+        items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new Item("item-" + i, "sock-" + i, i % 3 + 1, 9.99F + i));
+        }
+        paymentResponse = new PaymentResponse(true, "Payment authorised");
+        order = new CustomerOrder("5f0c6f3e9d1b2a0001a1b2c3", "57a98d98e4b00679b4a830af", customer, address, card,
+                items, new Shipment("57a98d98e4b00679b4a830af"), new Date(), 42.0F);
+    }
+
+    @Benchmark
+    public Span attributes() {
+        Span span = new RecordingSpan();
+        OrderSpanAttributes.Level level = spanAttributes.level(span);
+        spanAttributes.lookups(span, level, address, customer, card, items, 42.0F);
+        spanAttributes.payment(span, level, paymentResponse);
+        spanAttributes.savedOrder(span, level, order);
+        return span;
+    }
+
+    @Benchmark
+    public Object legacyAttributes() {
+        Span span = new RecordingSpan();
+        span.setAttribute("address", address.toString());
+        span.setAttribute("customer", customer.toString());
+        span.setAttribute("card", card.toString());
+        span.setAttribute("items", items.toString());
+        span.setAttribute("amount", 42.0F);
+        String log = "Sending payment request: " + new PaymentRequest(address, card, customer, 42.0F);
+        span.setAttribute("paymentResponse", paymentResponse.toString());
+        span.setAttribute("paymentStatus", "authorised");
+        span.setAttribute("order", order.toString());
+        span.setAttribute("saved order", order.toString());
+        return new Object[]{span, log};
+    }
+
+    // Span échantillonné qui garde ses attributs dans une map, comme le SDK
+    private static class RecordingSpan implements Span {
+        private static final SpanContext CONTEXT = SpanContext.create("4bf92f3577b34da6a3ce929d0e0e4736",
+                "00f067aa0ba902b7", TraceFlags.getSampled(), TraceState.getDefault());
+
+        private final Map<AttributeKey<?>, Object> attributes = new HashMap<>();
+
+        @Override
+        public <T> Span setAttribute(AttributeKey<T> key, T value) {
+            attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Span addEvent(String name, Attributes attributes) {
+            return this;
+        }
+
+        @Override
+        public Span addEvent(String name, Attributes attributes, long timestamp, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public Span setStatus(StatusCode statusCode, String description) {
+            return this;
+        }
+
+        @Override
+        public Span recordException(Throwable exception, Attributes additionalAttributes) {
+            return this;
+        }
+
+        @Override
+        public Span updateName(String name) {
+            return this;
+        }
+
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public void end(long timestamp, TimeUnit unit) {
+        }
+
+        @Override
+        public SpanContext getSpanContext() {
+            return CONTEXT;
+        }
+
+        @Override
+        public boolean isRecording() {
+            return true;
+        }
+    }
+}
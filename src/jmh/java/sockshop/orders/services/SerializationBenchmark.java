@@ -0,0 +1,69 @@
+package sockshop.orders.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import sockshop.orders.entities.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Réponse de POST /orders (CustomerOrder en JSON) et lecture d'une ressource HAL customer avec le mapper d'AsyncGetService
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final String CUSTOMER_HAL = "{"
+            + "\"firstName\":\"Eve\",\"lastName\":\"Berger\",\"username\":\"Eve_Berger\","
+            + "\"id\":\"57a98d98e4b00679b4a830af\","
+            + "\"_links\":{"
+            + "\"addresses\":{\"href\":\"http://users-orders-mock:1080/customers/57a98d98e4b00679b4a830af/addresses\"},"
+            + "\"cards\":{\"href\":\"http://users-orders-mock:1080/customers/57a98d98e4b00679b4a830af/cards\"},"
+            + "\"customer\":{\"href\":\"http://users-orders-mock:1080/customers/57a98d98e4b00679b4a830af\"},"
+            + "\"self\":{\"href\":\"http://users-orders-mock:1080/customers/57a98d98e4b00679b4a830af\"}}}";
+
+    @Param({"1", "10", "100"})
+    private int itemCount;
+
+    // Même configuration que le mapper de Spring Boot pour les réponses HTTP
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final ObjectMapper halObjectMapper = AsyncGetService.halObjectMapper();
+
+    private final TypeReference<EntityModel<Customer>> customerType = new TypeReference<>() {};
+
+    private CustomerOrder order;
+
+    @Setup
+    public void setUp() {
+        Address address = new Address("57a98d98e4b00679b4a830ad", "246", "Whitelees Road", "Glasgow", "G67 3DL", "United Kingdom");
+        Card card = new Card("57a98d98e4b00679b4a830ae", "5953580604169678", "08/19", "678");
+        Customer customer = new Customer("57a98d98e4b00679b4a830af", "Eve", "Berger", "Eve_Berger",
+                List.of(address), List.of(card));
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new Item("item-" + i, "sock-" + i, i % 3 + 1, 9.99F + i));
+        }
+        order = new CustomerOrder("5f0c6f3e9d1b2a0001a1b2c3", "57a98d98e4b00679b4a830af", customer, address, card,
+                items, new Shipment("57a98d98e4b00679b4a830af"), new Date(), 42.0F);
+    }
+
+    @Benchmark
+    public byte[] serializeCustomerOrder() throws Exception {
+        return objectMapper.writeValueAsBytes(order);
+    }
+
+    @Benchmark
+    public EntityModel<Customer> deserializeHalCustomer() throws Exception {
+        return halObjectMapper.readValue(CUSTOMER_HAL, customerType);
+    }
+}
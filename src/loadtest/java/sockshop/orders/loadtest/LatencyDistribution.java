@@ -0,0 +1,47 @@
+package sockshop.orders.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Latence simulée d'un stub, décrite par une chaîne :
+//   fixed:20ms            toujours 20 ms
+//   uniform:5ms:50ms      uniforme entre 5 et 50 ms
+//   exponential:20ms      exponentielle de moyenne 20 ms
+//   lognormal:20ms:0.5    log-normale de médiane 20 ms et d'écart-type (log) 0.5 : queue longue
+abstract class LatencyDistribution {
+
+    abstract long sampleMillis();
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        long first = parts.length > 1 ? millis(parts[1]) : 0;
+        switch (parts[0]) {
+            case "fixed":
+                return of(() -> first);
+            case "uniform":
+                long max = millis(parts[2]);
+                return of(() -> ThreadLocalRandom.current().nextLong(first, max + 1));
+            case "exponential":
+                return of(() -> Math.round(-first * Math.log(1 - ThreadLocalRandom.current().nextDouble())));
+            case "lognormal":
+                double sigma = Double.parseDouble(parts[2]);
+                return of(() -> Math.round(first * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian())));
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+        }
+    }
+
+    private static long millis(String duration) {
+        return DurationStyle.detectAndParse(duration).toMillis();
+    }
+
+    private static LatencyDistribution of(java.util.function.LongSupplier sampler) {
+        return new LatencyDistribution() {
+            @Override
+            long sampleMillis() {
+                return sampler.getAsLong();
+            }
+        };
+    }
+}
@@ -0,0 +1,154 @@
+package sockshop.orders.loadtest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import sockshop.orders.ServicesOrdersApplication;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Harnais de charge de bout en bout, sans réseau ni conteneur : stubs locaux pour users, carts, payment et
+// shipping, mongod jetable, service orders démarré dans la même JVM, puis charge en boucle ouverte sur
+// POST /orders et GET /orders. Voir docs/benchmarks.md pour les propriétés (-Dloadtest.*).
+public class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(prop("loadtest.rate", "200"));
+        Duration warmup = DurationStyle.detectAndParse(prop("loadtest.warmup", "15s"));
+        Duration duration = DurationStyle.detectAndParse(prop("loadtest.duration", "60s"));
+        double getRatio = Double.parseDouble(prop("loadtest.get-ratio", "0.2"));
+        String getPath = prop("loadtest.get-path", "/orders?limit=50");
+        int customers = Integer.parseInt(prop("loadtest.customers", "100"));
+        int itemsPerCart = Integer.parseInt(prop("loadtest.items-per-cart", "3"));
+        int maxOutstanding = Integer.parseInt(prop("loadtest.max-outstanding", "10000"));
+        Path outDir = Path.of(prop("loadtest.out-dir", "target/loadtest"));
+        Files.createDirectories(outDir);
+
+        try (TestMongo mongo = TestMongo.start(System.getProperty("loadtest.mongo-uri"), prop("loadtest.mongod", "mongod"));
+             UpstreamStub users = stub("users")
+                     .route("/customers/", e -> "{\"id\":\"" + UpstreamStub.lastSegment(e) + "\",\"firstName\":\"Load\","
+                             + "\"lastName\":\"Test\",\"username\":\"load_" + UpstreamStub.lastSegment(e) + "\"}")
+                     .route("/addresses/", e -> "{\"id\":\"" + UpstreamStub.lastSegment(e) + "\",\"number\":\"1\","
+                             + "\"street\":\"Stub Street\",\"city\":\"Stubville\",\"postcode\":\"12345\",\"country\":\"Stubland\"}")
+                     .route("/cards/", e -> "{\"id\":\"" + UpstreamStub.lastSegment(e) + "\",\"longNum\":\"1234567812345678\","
+                             + "\"expires\":\"12/30\",\"ccv\":\"123\"}")
+                     .start();
+             UpstreamStub carts = stub("carts")
+                     .route("/carts/", e -> cartItems(itemsPerCart))
+                     .start();
+             UpstreamStub payment = stub("payment")
+                     .route("/payment", e -> "{\"authorised\":true,\"message\":\"Payment authorised\"}")
+                     .start();
+             UpstreamStub shipping = stub("shipping")
+                     .route("/shipping", UpstreamStub::body)
+                     .start()) {
+
+            ConfigurableApplicationContext app = SpringApplication.run(ServicesOrdersApplication.class,
+                    "--server.port=0",
+                    "--spring.data.mongodb.uri=" + mongo.uri(),
+                    "--service.users=" + users.baseUri(),
+                    "--service.carts=" + carts.baseUri(),
+                    "--orders.payment-uri=" + payment.baseUri() + "/payment",
+                    "--orders.shipping-uri=" + shipping.baseUri() + "/shipping",
+                    "--simulate.latency=false", "--simulate.cpu=false", "--simulate.leak=false",
+                    "--simulate.thread=false", "--simulate.deadlock=false", "--simulate.error=false",
+                    "--logging.level.root=WARN", "--logging.level.sockshop.orders=WARN",
+                    "--logging.level.org.springframework.web=WARN");
+            try {
+                URI base = URI.create("http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port"));
+                List<String> bodies = new ArrayList<>();
+                for (int i = 0; i < customers; i++) {
+                    String id = String.format("%024x", i);
+                    bodies.add("{\"customer\":\"" + users.baseUri() + "/customers/" + id + "\","
+                            + "\"address\":\"" + users.baseUri() + "/addresses/" + id + "\","
+                            + "\"card\":\"" + users.baseUri() + "/cards/" + id + "\","
+                            + "\"items\":\"" + carts.baseUri() + "/carts/" + id + "/items\"}");
+                }
+
+                HttpClient client = HttpClient.newBuilder()
+                        .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()))
+                        .connectTimeout(Duration.ofSeconds(5))
+                        .build();
+                List<OpenLoopLoad.Operation> operations = List.of(
+                        new OpenLoopLoad.Operation("post", 1 - getRatio, () -> HttpRequest.newBuilder(base.resolve("/orders"))
+                                .header("Content-Type", "application/json")
+                                .timeout(Duration.ofSeconds(30))
+                                .POST(HttpRequest.BodyPublishers.ofString(
+                                        bodies.get(ThreadLocalRandom.current().nextInt(bodies.size()))))
+                                .build()),
+                        new OpenLoopLoad.Operation("get", getRatio, () -> HttpRequest.newBuilder(base.resolve(getPath))
+                                .timeout(Duration.ofSeconds(30))
+                                .GET()
+                                .build()));
+                OpenLoopLoad load = new OpenLoopLoad(client, operations, maxOutstanding);
+
+                System.out.printf("Warmup: %.0f req/s for %s%n", rate, warmup);
+                load.run(rate, warmup);
+                System.out.printf("Measuring: %.0f req/s for %s%n", rate, duration);
+                Duration elapsed = load.run(rate, duration);
+
+                load.report(System.out, elapsed);
+                try (PrintStream summary = new PrintStream(new FileOutputStream(outDir.resolve("summary.txt").toFile()))) {
+                    summary.printf("rate=%.0f duration=%s get-ratio=%.2f stubs=%s%n", rate, duration, getRatio, stubSettings());
+                    load.report(summary, elapsed);
+                }
+                // Distribution complète, au format .hgrm (lisible par HdrHistogram Plotter), en millisecondes
+                for (OpenLoopLoad.Operation operation : operations) {
+                    try (PrintStream hgrm = new PrintStream(new FileOutputStream(outDir.resolve(operation.name + ".hgrm").toFile()))) {
+                        operation.histogram.outputPercentileDistribution(hgrm, 1e6);
+                    }
+                }
+                System.out.println("Results in " + outDir.toAbsolutePath());
+            } finally {
+                app.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    // -Dloadtest.stub.<service>.latency=lognormal:20ms:0.5 -Dloadtest.stub.<service>.error-rate=0.01
+    private static UpstreamStub stub(String service) throws IOException {
+        return new UpstreamStub(service,
+                LatencyDistribution.parse(prop("loadtest.stub." + service + ".latency", "lognormal:10ms:0.5")),
+                Double.parseDouble(prop("loadtest.stub." + service + ".error-rate", "0")));
+    }
+
+    private static String stubSettings() {
+        StringBuilder settings = new StringBuilder();
+        for (String service : List.of("users", "carts", "payment", "shipping")) {
+            settings.append(service).append('[')
+                    .append(prop("loadtest.stub." + service + ".latency", "lognormal:10ms:0.5")).append(", errors=")
+                    .append(prop("loadtest.stub." + service + ".error-rate", "0")).append("] ");
+        }
+        return settings.toString().trim();
+    }
+
+    private static String cartItems(int count) {
+        StringBuilder items = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                items.append(',');
+            }
+            items.append("{\"itemId\":\"").append(i).append("\",\"quantity\":").append(i % 3 + 1)
+                    .append(",\"unitPrice\":").append(10 + i).append('}');
+        }
+        return items.append(']').toString();
+    }
+
+    private static String prop(String name, String defaultValue) {
+        return System.getProperty(name, defaultValue);
+    }
+}
@@ -0,0 +1,132 @@
+package sockshop.orders.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Charge en boucle ouverte : les requêtes partent à intervalles fixes (rate par seconde), que les réponses
+// précédentes soient arrivées ou non. La latence est mesurée depuis l'heure d'envoi prévue, ce qui évite de
+// masquer l'attente quand le service décroche (coordinated omission).
+class OpenLoopLoad {
+
+    // Une opération du mélange de charge (POST /orders, GET /orders...) avec son histogramme
+    static class Operation {
+        final String name;
+        final double weight;
+        final Supplier<HttpRequest> request;
+        final Recorder recorder = new Recorder(3);
+        final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        Histogram histogram;
+
+        Operation(String name, double weight, Supplier<HttpRequest> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+    }
+
+    private final HttpClient client;
+    private final List<Operation> operations;
+    private final int maxOutstanding;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    OpenLoopLoad(HttpClient client, List<Operation> operations, int maxOutstanding) {
+        this.client = client;
+        this.operations = operations;
+        this.maxOutstanding = maxOutstanding;
+    }
+
+    // Envoie la charge pendant duration puis attend les réponses en vol ; renvoie la durée de mesure effective
+    Duration run(double rate, Duration duration) throws InterruptedException {
+        for (Operation operation : operations) {
+            operation.recorder.reset();
+            operation.outcomes.clear();
+        }
+        double totalWeight = operations.stream().mapToDouble(op -> op.weight).sum();
+        long interval = (long) (1_000_000_000L / rate);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            send(pick(totalWeight), intended);
+        }
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        for (Operation operation : operations) {
+            operation.histogram = operation.recorder.getIntervalHistogram();
+        }
+        return elapsed;
+    }
+
+    private Operation pick(double totalWeight) {
+        double r = ThreadLocalRandom.current().nextDouble(totalWeight);
+        for (Operation operation : operations) {
+            r -= operation.weight;
+            if (r < 0) {
+                return operation;
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    private void send(Operation operation, long intended) {
+        if (outstanding.incrementAndGet() > maxOutstanding) {
+            outstanding.decrementAndGet();
+            count(operation, "dropped");
+            return;
+        }
+        client.sendAsync(operation.request.get(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, e) -> {
+                    operation.recorder.recordValue(System.nanoTime() - intended);
+                    count(operation, e != null ? e.getClass().getSimpleName() : String.valueOf(response.statusCode()));
+                    outstanding.decrementAndGet();
+                });
+    }
+
+    private static void count(Operation operation, String outcome) {
+        operation.outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+    }
+
+    void report(PrintStream out, Duration elapsed) {
+        double seconds = elapsed.toNanos() / 1e9;
+        out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s  %s%n",
+                "operation", "count", "req/s", "p50_ms", "p90_ms", "p99_ms", "p99.9_ms", "max_ms", "outcomes");
+        for (Operation operation : operations) {
+            Histogram h = operation.histogram;
+            out.printf("%-10s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f  %s%n",
+                    operation.name,
+                    h.getTotalCount(),
+                    h.getTotalCount() / seconds,
+                    h.getValueAtPercentile(50) / 1e6,
+                    h.getValueAtPercentile(90) / 1e6,
+                    h.getValueAtPercentile(99) / 1e6,
+                    h.getValueAtPercentile(99.9) / 1e6,
+                    h.getMaxValue() / 1e6,
+                    new TreeMap<>(operation.outcomes));
+        }
+    }
+}
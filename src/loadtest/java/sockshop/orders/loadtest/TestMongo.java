@@ -0,0 +1,108 @@
+package sockshop.orders.loadtest;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// MongoDB jetable pour le harnais : un mongod local lancé en replica set à un membre (les transactions de l'outbox
+// en ont besoin) sur un port libre et un répertoire temporaire, arrêté et supprimé à la fin.
+// Avec loadtest.mongo-uri, le harnais utilise une base existante à la place.
+class TestMongo implements AutoCloseable {
+
+    private final String uri;
+    private final Process process;
+    private final Path dbPath;
+
+    private TestMongo(String uri, Process process, Path dbPath) {
+        this.uri = uri;
+        this.process = process;
+        this.dbPath = dbPath;
+    }
+
+    static TestMongo start(String existingUri, String mongod) throws IOException, InterruptedException {
+        if (existingUri != null && !existingUri.isBlank()) {
+            return new TestMongo(existingUri, null, null);
+        }
+        int port = freePort();
+        Path dbPath = Files.createTempDirectory("orders-loadtest-mongo");
+        Process process = new ProcessBuilder(mongod,
+                "--port", String.valueOf(port),
+                "--dbpath", dbPath.toString(),
+                "--bind_ip", "127.0.0.1",
+                "--replSet", "rs0")
+                .redirectErrorStream(true)
+                .redirectOutput(dbPath.resolve("mongod.log").toFile())
+                .start();
+        TestMongo mongo = new TestMongo("mongodb://127.0.0.1:" + port + "/data?directConnection=true", process, dbPath);
+        try {
+            awaitPort(port);
+            initiateReplicaSet(port);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            mongo.close();
+            throw e;
+        }
+        return mongo;
+    }
+
+    String uri() {
+        return uri;
+    }
+
+    private static void initiateReplicaSet(int port) throws InterruptedException {
+        try (MongoClient client = MongoClients.create("mongodb://127.0.0.1:" + port + "/?directConnection=true")) {
+            client.getDatabase("admin").runCommand(new Document("replSetInitiate", new Document("_id", "rs0")
+                    .append("members", List.of(new Document("_id", 0).append("host", "127.0.0.1:" + port)))));
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (!Boolean.TRUE.equals(client.getDatabase("admin").runCommand(new Document("hello", 1))
+                    .getBoolean("isWritablePrimary"))) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("mongod did not become primary");
+                }
+                Thread.sleep(200);
+            }
+        }
+    }
+
+    private static void awaitPort(int port) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 500);
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("mongod did not start on port " + port, e);
+                }
+                Thread.sleep(200);
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        if (process == null) {
+            return;
+        }
+        process.destroy();
+        process.waitFor();
+        try (Stream<Path> files = Files.walk(dbPath)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
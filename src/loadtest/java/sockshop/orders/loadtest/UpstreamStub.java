@@ -0,0 +1,121 @@
+package sockshop.orders.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+// Remplaçant local d'un service amont (users, carts, payment, shipping) : serveur HTTP du JDK sur un port libre,
+// réponses JSON construites à partir du chemin, latence et taux d'erreur (503) configurables.
+class UpstreamStub implements AutoCloseable {
+
+    static {
+        // Sans TCP_NODELAY, en-têtes et corps écrits séparément attendent l'ACK retardé du client (~40 ms par réponse)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final String name;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final Map<String, Function<HttpExchange, String>> routes = new LinkedHashMap<>();
+
+    UpstreamStub(String name, LatencyDistribution latency, double errorRate) throws IOException {
+        this.name = name;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        // Un thread par requête en cours : la latence simulée ne doit pas limiter la concurrence du stub
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    // Réponse aux chemins qui commencent par prefix ; la fonction reçoit l'échange (chemin, corps)
+    UpstreamStub route(String prefix, Function<HttpExchange, String> responder) {
+        routes.put(prefix, responder);
+        return this;
+    }
+
+    UpstreamStub start() {
+        server.start();
+        return this;
+    }
+
+    URI baseUri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    String name() {
+        return name;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            sleep(latency.sampleMillis());
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                respond(exchange, 503, "{\"error\":\"simulated " + name + " failure\"}");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            for (Map.Entry<String, Function<HttpExchange, String>> route : routes.entrySet()) {
+                if (path.startsWith(route.getKey())) {
+                    respond(exchange, 200, route.getValue().apply(exchange));
+                    return;
+                }
+            }
+            respond(exchange, 404, "{\"error\":\"no stub for " + path + "\"}");
+        }
+    }
+
+    static String lastSegment(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    static String body(HttpExchange exchange) {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
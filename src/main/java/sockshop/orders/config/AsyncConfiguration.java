@@ -0,0 +1,84 @@
+package sockshop.orders.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import sockshop.orders.services.Deadline;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfiguration {
+
+    public static final String UPSTREAM_EXECUTOR = "upstreamExecutor";
+
+    @Value("${orders.upstream.pool.core-size:16}")
+    private int corePoolSize;
+
+    @Value("${orders.upstream.pool.max-size:64}")
+    private int maxPoolSize;
+
+    @Value("${orders.upstream.pool.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${orders.upstream.virtual.concurrency-limit:1024}")
+    private int virtualConcurrencyLimit;
+
+    // Pool dédié aux appels vers users, carts, payment et shipping.
+    // Borné : une fois la file pleine, les appels sont rejetés au lieu de s'accumuler.
+    // Les deux variantes recopient l'échéance de la requête (Deadline) sur le thread de l'appel.
+    @Bean(name = UPSTREAM_EXECUTOR)
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor upstreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("orders-upstream-");
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setTaskDecorator(Deadline::wrap);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+
+    // Déclarer upstreamExecutor désactive l'applicationTaskExecutor de Spring Boot (@ConditionalOnMissingBean(Executor.class)),
+    // et l'asynchrone de Spring MVC (StreamingResponseBody, ServerResponse.async) retomberait sur un SimpleAsyncTaskExecutor
+    // sans limite : on le recrée à l'identique avec les builders auto-configurés (spring.task.execution.*)
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor applicationTaskExecutorVirtualThreads(SimpleAsyncTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    // Mode threads virtuels (spring.threads.virtual.enabled=true, JDK 21+) : un thread virtuel par appel.
+    // La limite de concurrence remplace la taille du pool ; au-delà, l'appelant attend qu'une place se libère.
+    @Bean(name = UPSTREAM_EXECUTOR)
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor virtualUpstreamExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("orders-upstream-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(virtualConcurrencyLimit);
+        executor.setTaskDecorator(Deadline::wrap);
+        executor.setTaskTerminationTimeout(10_000);
+        return executor;
+    }
+}
@@ -0,0 +1,37 @@
+package sockshop.orders.config;
+
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import sockshop.orders.services.OrderPersistence;
+
+// Transactions Mongo (commande + expédition en attente) et dispatcher planifié de l'outbox.
+// Les transactions demandent un replica set : voir la commande du service mongodb dans docker-compose.yml.
+@Configuration
+@EnableScheduling
+public class OutboxConfiguration {
+
+    // Dans une transaction, seul le write concern du commit compte : celui d'orders.persistence.mode
+    @Bean
+    public MongoTransactionManager mongoTransactionManager(MongoDatabaseFactory databaseFactory,
+                                                           @Value("${orders.persistence.mode:default}") String mode) {
+        WriteConcern writeConcern = OrderPersistence.writeConcern(mode);
+        if (writeConcern == null) {
+            return new MongoTransactionManager(databaseFactory);
+        }
+        return new MongoTransactionManager(databaseFactory,
+                TransactionOptions.builder().writeConcern(writeConcern).build());
+    }
+
+    @Bean
+    public TransactionTemplate mongoTransactionTemplate(MongoTransactionManager mongoTransactionManager) {
+        return new TransactionTemplate(mongoTransactionManager);
+    }
+}
@@ -0,0 +1,93 @@
+package sockshop.orders.config;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import com.mongodb.reactivestreams.client.MongoClient;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.mongo.ReactiveMongoClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.function.RequestPredicates;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import sockshop.orders.controllers.ReactiveOrdersHandler;
+import sockshop.orders.services.OrderPersistence;
+
+@Configuration
+@ConditionalOnProperty(name = "orders.pipeline", havingValue = "reactive")
+public class ReactivePipelineConfiguration {
+
+    @Value("${orders.hedging.enabled:false}")
+    private boolean hedgingEnabled;
+
+    // ReactiveGetService n'envoie pas de requêtes de couverture : refusé plutôt qu'ignoré en silence
+    @PostConstruct
+    public void checkHedging() {
+        if (hedgingEnabled) {
+            throw new IllegalStateException("orders.hedging.enabled=true is not supported with orders.pipeline=reactive");
+        }
+    }
+
+    // Client réactif ouvert seulement dans ce mode (MongoReactive*AutoConfiguration est exclue) : mêmes réglages
+    // que le client synchrone (spring.data.mongodb.*, métriques du pool)
+    @Bean(destroyMethod = "close")
+    public MongoClient reactiveMongoClient(ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers,
+                                           MongoClientSettings settings) {
+        return new ReactiveMongoClientFactory(customizers.orderedStream().toList()).createMongoClient(settings);
+    }
+
+    @Bean
+    public SimpleReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory(MongoClient reactiveMongoClient,
+                                                                           MongoDatabaseFactory databaseFactory) {
+        return new SimpleReactiveMongoDatabaseFactory(reactiveMongoClient, databaseFactory.getMongoDatabase().getName());
+    }
+
+    // Même convertisseur que MongoTemplate : mêmes événements de mapping (CompactOrderSchema)
+    @Bean
+    public ReactiveMongoTemplate reactiveMongoTemplate(ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory,
+                                                       MongoConverter converter) {
+        return new ReactiveMongoTemplate(reactiveMongoDatabaseFactory, converter);
+    }
+
+    // Commande + expédition en attente (outbox) : même write concern de commit que OutboxConfiguration
+    @Bean
+    public ReactiveMongoTransactionManager reactiveMongoTransactionManager(
+            ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory,
+            @Value("${orders.persistence.mode:default}") String mode) {
+        WriteConcern writeConcern = OrderPersistence.writeConcern(mode);
+        if (writeConcern == null) {
+            return new ReactiveMongoTransactionManager(reactiveMongoDatabaseFactory);
+        }
+        return new ReactiveMongoTransactionManager(reactiveMongoDatabaseFactory,
+                TransactionOptions.builder().writeConcern(writeConcern).build());
+    }
+
+    @Bean
+    public TransactionalOperator mongoTransactionalOperator(ReactiveMongoTransactionManager reactiveMongoTransactionManager) {
+        return TransactionalOperator.create(reactiveMongoTransactionManager);
+    }
+
+    // Les routes fonctionnelles passent avant les @RequestMapping : en mode réactif cette route
+    // remplace OrdersController.newOrder pour POST /orders, les autres endpoints ne changent pas.
+    @Bean
+    public RouterFunction<ServerResponse> reactiveOrderRoutes(ReactiveOrdersHandler handler) {
+        return RouterFunctions.route()
+                .POST("/orders", RequestPredicates.contentType(MediaType.APPLICATION_JSON), handler::newOrder)
+                .build();
+    }
+}
@@ -1,15 +1,30 @@
 package sockshop.orders.config;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
-import java.net.InetSocketAddress;
-import java.net.Proxy;
+import java.io.IOException;
+import java.time.Duration;
 
 @Component
 public class RestProxyTemplate {
@@ -22,21 +37,77 @@ public class RestProxyTemplate {
     @Value("${proxy.port:}")
     private String port;
 
+    // Pool de connexions partagé par tous les appels sortants (users, carts, payment, shipping)
+    @Value("${http.client.max-connections:200}")
+    private int maxConnections;
+
+    @Value("${http.client.max-connections-per-host:50}")
+    private int maxConnectionsPerHost;
+
+    @Value("${http.client.connect-timeout:1s}")
+    private Duration connectTimeout;
+
+    @Value("${http.client.read-timeout:5s}")
+    private Duration readTimeout;
+
+    @Value("${http.client.pool-acquire-timeout:500ms}")
+    private Duration poolAcquireTimeout;
+
+    @Value("${http.client.idle-eviction:30s}")
+    private Duration idleEviction;
+
+    @Value("${http.client.time-to-live:5m}")
+    private Duration timeToLive;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CloseableHttpClient httpClient;
+
+    private ClientHttpRequestFactory requestFactory;
+
     private RestTemplate restTemplate;
 
     @Bean
     public RestTemplate restTemplate() {
-        RestTemplate restTemplate = new RestTemplate();
-        configureProxy(restTemplate);
-        return restTemplate;
+        return new RestTemplate(requestFactory);
     }
 
     @PostConstruct
     public void init() {
-        this.restTemplate = restTemplate(); // Initialize the restTemplate
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerHost)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(timeToLive))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "upstream").bindTo(meterRegistry);
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolAcquireTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction));
+        configureProxy(builder);
+
+        this.httpClient = builder.build();
+        this.requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        this.restTemplate = restTemplate();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
     }
 
-    private void configureProxy(RestTemplate restTemplate) {
+    private void configureProxy(HttpClientBuilder builder) {
         if (host.isEmpty() || port.isEmpty()) {
             return;
         }
@@ -46,15 +117,18 @@ public class RestProxyTemplate {
         } catch (NumberFormatException e) {
             logger.error("Unable to parse the proxy port number");
         }
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        InetSocketAddress address = new InetSocketAddress(host, portNr);
-        Proxy proxy = new Proxy(Proxy.Type.HTTP, address);
-        factory.setProxy(proxy);
-
-        restTemplate.setRequestFactory(factory);
+        builder.setProxy(new HttpHost(host, portNr));
     }
 
     public RestTemplate getRestTemplate() {
         return restTemplate;
     }
-}
\ No newline at end of file
+
+    public CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public ClientHttpRequestFactory getRequestFactory() {
+        return requestFactory;
+    }
+}
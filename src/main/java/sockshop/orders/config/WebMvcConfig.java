@@ -1,22 +1,81 @@
 package sockshop.orders.config;
 
 import io.micrometer.core.instrument.MeterRegistry;
+import sockshop.orders.middleware.AdaptiveConcurrencyLimit;
+import sockshop.orders.middleware.ConcurrencyLimitInterceptor;
 import sockshop.orders.middleware.HTTPMonitoringInterceptor;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.handler.MappedInterceptor;
 
+import java.time.Duration;
+
 @Configuration
 public class WebMvcConfig {
 
+    // Nombre max de modèles de route distincts dans les métriques HTTP ; les suivants sont regroupés sous OTHER
+    @Value("${orders.http-metrics.max-routes:100}")
+    private int maxRoutes;
+
     @Bean
     public HTTPMonitoringInterceptor httpMonitoringInterceptor(MeterRegistry meterRegistry) {
-        return new HTTPMonitoringInterceptor(meterRegistry);
+        return new HTTPMonitoringInterceptor(meterRegistry, maxRoutes);
     }
 
     @Bean
     public MappedInterceptor myMappedInterceptor(HTTPMonitoringInterceptor interceptor) {
         return new MappedInterceptor(new String[]{"/**"}, interceptor);
     }
+
+    @Value("${orders.concurrency-limit.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${orders.concurrency-limit.min-limit:4}")
+    private int minLimit;
+
+    @Value("${orders.concurrency-limit.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${orders.concurrency-limit.tolerance:1.5}")
+    private double tolerance;
+
+    @Value("${orders.concurrency-limit.smoothing:0.2}")
+    private double smoothing;
+
+    @Value("${orders.concurrency-limit.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${orders.concurrency-limit.min-rtt-window:10s}")
+    private Duration minRttWindow;
+
+    @Value("${orders.concurrency-limit.probe-duration:200ms}")
+    private Duration probeDuration;
+
+    @Value("${orders.concurrency-limit.retry-after:1s}")
+    private Duration retryAfter;
+
+    // Limite adaptative des POST /orders en cours ; enregistrée après le monitoring pour que les 503 soient mesurés
+    @Bean
+    @ConditionalOnProperty(name = "orders.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+    public MappedInterceptor concurrencyLimitInterceptor(MeterRegistry meterRegistry) {
+        return concurrencyLimit("/orders", meterRegistry);
+    }
+
+    // POST /orders/batch a sa propre limite : un lot dure bien plus qu'une commande, mêlé aux commandes simples
+    // il ferait passer ses temps de réponse pour de la file d'attente et reculer la limite de /orders
+    @Bean
+    @ConditionalOnProperty(name = "orders.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+    public MappedInterceptor batchConcurrencyLimitInterceptor(MeterRegistry meterRegistry) {
+        return concurrencyLimit("/orders/batch", meterRegistry);
+    }
+
+    private MappedInterceptor concurrencyLimit(String path, MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance,
+                smoothing, backoffRatio, minRttWindow, probeDuration);
+        return new MappedInterceptor(new String[]{path},
+                new ConcurrencyLimitInterceptor(limit, path, Math.max(1, retryAfter.toSeconds()), meterRegistry));
+    }
 }
@@ -0,0 +1,316 @@
+package sockshop.orders.controllers;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import sockshop.orders.config.OrdersConfigurationProperties;
+import sockshop.orders.controllers.OrdersController.InvalidOrderException;
+import sockshop.orders.controllers.OrdersController.PaymentDeclinedException;
+import sockshop.orders.entities.*;
+import sockshop.orders.resources.BatchOrderResult;
+import sockshop.orders.resources.NewOrderResource;
+import sockshop.orders.resources.PaymentRequest;
+import sockshop.orders.resources.PaymentResponse;
+import sockshop.orders.services.AsyncGetService;
+import sockshop.orders.services.CustomerOrderCache;
+import sockshop.orders.services.OrderOutcomes;
+import sockshop.orders.services.OrderOutcomes.Outcome;
+import sockshop.orders.services.OrderPersistence;
+import sockshop.orders.services.ShipmentOutbox;
+import sockshop.orders.services.Upstream;
+import sockshop.orders.services.UpstreamUnavailableException;
+import sockshop.orders.test.ProblemSimulator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+
+// POST /orders/batch : plusieurs commandes en une requête. Les URI customer, address, card et items
+// communes à plusieurs entrées ne sont lues qu'une fois, les paiements (puis expéditions en mode sync) tournent
+// avec un parallélisme borné et les commandes acceptées sont enregistrées en un seul insert Mongo
+// (une par une si l'insert groupé échoue).
+@RestController
+public class BatchOrdersController {
+
+    private static final String TIMEOUT_MESSAGE = "Unable to create order due to timeout from one of the services.";
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private AsyncGetService asyncGetService;
+
+    @Autowired
+    private OrdersConfigurationProperties config;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ProblemSimulator problemSimulator;
+
+    @Autowired
+    private ShipmentOutbox shipmentOutbox;
+
+    @Autowired
+    private OrderOutcomes orderOutcomes;
+
+    @Autowired
+    private CustomerOrderCache customerOrderCache;
+
+    @Autowired
+    private OrderPersistence orderPersistence;
+
+    @Value(value = "${http.timeout:5}")
+    private long timeout;
+
+    @Value("${orders.payment-uri}")
+    private String paymentUri;
+
+    @Value("${orders.batch.max-size:100}")
+    private int maxBatchSize;
+
+    @Value("${orders.batch.payment-parallelism:8}")
+    private int paymentParallelism;
+
+    private DistributionSummary batchSize;
+
+    @PostConstruct
+    public void initMetrics() {
+        batchSize = DistributionSummary.builder("orders_batch_size")
+                .description("Number of orders per POST /orders/batch request")
+                .register(meterRegistry);
+    }
+
+    @PostMapping(path = "/orders/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @WithSpan("fn newOrders")
+    public List<BatchOrderResult> newOrders(@RequestBody List<NewOrderResource> items) throws InterruptedException {
+        problemSimulator.simulateProblemsIfEnabled();
+        if (items.isEmpty() || items.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A batch must contain between 1 and " + maxBatchSize + " orders");
+        }
+        batchSize.record(items.size());
+        Span span = Span.current();
+        span.setAttribute("batchSize", items.size());
+
+        BatchOrderResult[] results = new BatchOrderResult[items.size()];
+        // Cause de l'échec de chaque entrée, pour le statut et le classement dans OrderOutcomes
+        Throwable[] errors = new Throwable[items.size()];
+
+        // Une lecture par URI distincte, partagée par toutes les entrées qui la référencent
+        Map<URI, CompletableFuture<EntityModel<Address>>> addresses = new HashMap<>();
+        Map<URI, CompletableFuture<EntityModel<Customer>>> customers = new HashMap<>();
+        Map<URI, CompletableFuture<EntityModel<Card>>> cards = new HashMap<>();
+        Map<URI, CompletableFuture<List<Item>>> carts = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            NewOrderResource item = items.get(i);
+            if (item == null || item.address == null || item.customer == null || item.card == null || item.items == null) {
+                errors[i] = new InvalidOrderException(
+                        "Invalid order request. Order requires customer, address, card and items.");
+                continue;
+            }
+            addresses.computeIfAbsent(item.address, uri -> call(() -> asyncGetService.getResource(Upstream.ADDRESS,
+                    uri, new ParameterizedTypeReference<EntityModel<Address>>() {})));
+            customers.computeIfAbsent(item.customer, uri -> call(() -> asyncGetService.getResource(Upstream.CUSTOMER,
+                    uri, new ParameterizedTypeReference<EntityModel<Customer>>() {})));
+            cards.computeIfAbsent(item.card, uri -> call(() -> asyncGetService.getResource(Upstream.CARD,
+                    uri, new ParameterizedTypeReference<EntityModel<Card>>() {})));
+            carts.computeIfAbsent(item.items, uri -> call(() -> asyncGetService.getDataList(Upstream.ITEMS,
+                    uri, new ParameterizedTypeReference<List<Item>>() {})));
+        }
+        span.setAttribute("distinctLookups", addresses.size() + customers.size() + cards.size() + carts.size());
+
+        List<CompletableFuture<?>> lookups = new ArrayList<>();
+        lookups.addAll(addresses.values());
+        lookups.addAll(customers.values());
+        lookups.addAll(cards.values());
+        lookups.addAll(carts.values());
+        try {
+            CompletableFuture.allOf(lookups.toArray(new CompletableFuture[0])).get(timeout, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Traité entrée par entrée ci-dessous : seules les commandes concernées échouent
+            LOG.debug("Batch lookups incomplete: {}", e.toString());
+        }
+
+        // Paiement puis expédition, au plus payment-parallelism commandes à la fois
+        Semaphore permits = new Semaphore(paymentParallelism);
+        Map<Integer, CompletableFuture<CustomerOrder>> pending = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            NewOrderResource item = items.get(i);
+            CompletableFuture<EntityModel<Address>> address = addresses.get(item.address);
+            CompletableFuture<EntityModel<Customer>> customer = customers.get(item.customer);
+            CompletableFuture<EntityModel<Card>> card = cards.get(item.card);
+            CompletableFuture<List<Item>> cart = carts.get(item.items);
+            if (!succeeded(address) || !succeeded(customer) || !succeeded(card) || !succeeded(cart)) {
+                errors[i] = lookupFailure(address, customer, card, cart);
+                continue;
+            }
+            permits.acquire();
+            pending.put(i, payAndShip(address.join().getContent(), customer.join().getContent(),
+                    card.join().getContent(), cart.join())
+                    .whenComplete((order, e) -> permits.release()));
+        }
+
+        List<Integer> accepted = new ArrayList<>();
+        List<CustomerOrder> orders = new ArrayList<>();
+        for (Map.Entry<Integer, CompletableFuture<CustomerOrder>> entry : pending.entrySet()) {
+            int i = entry.getKey();
+            try {
+                orders.add(entry.getValue().get());
+                accepted.add(i);
+            } catch (ExecutionException e) {
+                errors[i] = e.getCause();
+            }
+        }
+
+        if (!orders.isEmpty()) {
+            List<CustomerOrder> savedOrders = new ArrayList<>(orders.size());
+            try {
+                savedOrders.addAll(orderPersistence.saveAll(orders));
+            } catch (RuntimeException e) {
+                // Paiements déjà acceptés : chaque commande est réécrite seule (ids attribués par saveAll, une commande
+                // déjà insérée est remplacée) pour qu'un échec du lot ne perde pas les autres
+                LOG.warn("Unable to save batch of {} orders, saving them one by one: {}", orders.size(), e.getMessage());
+                for (int k = 0; k < accepted.size(); k++) {
+                    int i = accepted.get(k);
+                    try {
+                        savedOrders.add(orderPersistence.save(orders.get(k)));
+                    } catch (RuntimeException singleFailure) {
+                        LOG.error("Unable to save order {} of batch: {}", i, singleFailure.getMessage());
+                        savedOrders.add(null);
+                        errors[i] = singleFailure;
+                        results[i] = failure(i, HttpStatus.INTERNAL_SERVER_ERROR,
+                                "Unable to save order: " + singleFailure.getMessage());
+                    }
+                }
+            }
+            customerOrderCache.saved(savedOrders.stream().filter(Objects::nonNull).toList());
+            for (int k = 0; k < accepted.size(); k++) {
+                int i = accepted.get(k);
+                if (savedOrders.get(k) != null) {
+                    results[i] = new BatchOrderResult(i, HttpStatus.CREATED.value(), null, savedOrders.get(k));
+                    LOG.info("Successful order count: {}", orderOutcomes.record(Outcome.SUCCESS));
+                }
+            }
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] != null) {
+                if (results[i] == null) {
+                    results[i] = failure(i, errors[i]);
+                }
+                orderOutcomes.record(OrdersController.outcomeOf(errors[i]));
+            }
+        }
+        span.setAttribute("acceptedOrders", accepted.size());
+        return List.of(results);
+    }
+
+    private CompletableFuture<CustomerOrder> payAndShip(Address address, Customer customer, Card card, List<Item> items) {
+        float amount = OrdersController.calculateTotal(items);
+        PaymentRequest paymentRequest = new PaymentRequest(address, card, customer, amount);
+        LOG.debug("Sending payment request: {}", paymentRequest);
+        return call(() -> asyncGetService.postResource(Upstream.PAYMENT, URI.create(paymentUri), paymentRequest,
+                        new ParameterizedTypeReference<PaymentResponse>() {}))
+                .orTimeout(timeout, TimeUnit.SECONDS)
+                .thenCompose(paymentResponse -> {
+                    LOG.debug("Received payment response: {}", paymentResponse);
+                    if (!paymentResponse.isAuthorised()) {
+                        throw new PaymentDeclinedException(paymentResponse.getMessage());
+                    }
+                    String customerId = OrdersController.parseId(customer.getId());
+                    CompletableFuture<Shipment> shipment = shipmentOutbox.isEnabled()
+                            ? CompletableFuture.completedFuture(new Shipment(customerId))
+                            : call(() -> asyncGetService.postResource(Upstream.SHIPPING, config.getShippingUri(),
+                                    new Shipment(customerId), new ParameterizedTypeReference<Shipment>() {}))
+                                    .orTimeout(timeout, TimeUnit.SECONDS);
+                    return shipment.thenApply(confirmed -> new CustomerOrder(
+                            null,
+                            customerId,
+                            customer,
+                            address,
+                            card,
+                            items,
+                            confirmed,
+                            Calendar.getInstance().getTime(),
+                            amount));
+                });
+    }
+
+    private static boolean succeeded(CompletableFuture<?> future) {
+        return future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    private static Throwable lookupFailure(CompletableFuture<?>... lookups) {
+        for (CompletableFuture<?> lookup : lookups) {
+            if (!lookup.isDone()) {
+                return new TimeoutException("Lookup not completed within the batch timeout");
+            }
+        }
+        for (CompletableFuture<?> lookup : lookups) {
+            try {
+                lookup.join();
+            } catch (CompletionException e) {
+                return e;
+            }
+        }
+        return new IllegalStateException("Unable to create order due to unspecified IO error.");
+    }
+
+    private static BatchOrderResult failure(int index, Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e instanceof InvalidOrderException) {
+            return failure(index, HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (e instanceof PaymentDeclinedException) {
+            return failure(index, HttpStatus.NOT_ACCEPTABLE, e.getMessage());
+        }
+        if (e instanceof UpstreamUnavailableException) {
+            return failure(index, HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+        if (OrdersController.outcomeOf(e) == Outcome.TIMEOUT) {
+            return failure(index, HttpStatus.INTERNAL_SERVER_ERROR, TIMEOUT_MESSAGE);
+        }
+        return failure(index, HttpStatus.INTERNAL_SERVER_ERROR, "Unable to create order due to unspecified IO error.");
+    }
+
+    private static BatchOrderResult failure(int index, HttpStatus status, String message) {
+        return new BatchOrderResult(index, status.value(), message, null);
+    }
+
+    private static <T> CompletableFuture<T> call(UpstreamCall<T> call) {
+        try {
+            return call.start();
+        } catch (InterruptedException | IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private interface UpstreamCall<T> {
+        CompletableFuture<T> start() throws InterruptedException, IOException;
+    }
+}
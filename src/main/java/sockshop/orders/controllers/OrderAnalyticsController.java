@@ -0,0 +1,70 @@
+package sockshop.orders.controllers;
+
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import sockshop.orders.repositories.CustomerOrderRepository;
+import sockshop.orders.repositories.OrderRollup;
+import sockshop.orders.resources.OrderBucket;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+// GET /orders/analytics?from=<instant>[&to=<instant>][&granularity=minute|hour|day][&top=N] : nombre de commandes,
+// somme des totaux et top N des articles par tranche UTC, calculés par Mongo ; les tranches sans commande sont omises.
+// Lu sur les cumuls par minute d'OrderRollup quand orders.analytics.rollup.enabled=true et que leur historique est
+// calculé, sinon agrégé sur CustomerOrder.
+@RestController
+public class OrderAnalyticsController {
+
+    private static final Map<String, Duration> GRANULARITIES = Map.of(
+            "minute", Duration.ofMinutes(1), "hour", Duration.ofHours(1), "day", Duration.ofDays(1));
+
+    @Autowired
+    private CustomerOrderRepository customerOrderRepository;
+
+    @Autowired
+    private OrderRollup orderRollup;
+
+    @Value("${orders.analytics.max-buckets:1440}")
+    private int maxBuckets;
+
+    @Value("${orders.analytics.max-top:50}")
+    private int maxTop;
+
+    @GetMapping(path = "/orders/analytics", produces = MediaType.APPLICATION_JSON_VALUE)
+    @WithSpan("fn getOrderAnalytics")
+    public List<OrderBucket> getOrderAnalytics(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                               @RequestParam(defaultValue = "hour") String granularity,
+                                               @RequestParam(defaultValue = "5") int top) {
+        Date end = to == null ? new Date() : to;
+        Duration bucket = GRANULARITIES.get(granularity);
+        if (bucket == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "granularity must be one of " + GRANULARITIES.keySet());
+        }
+        if (!from.before(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to");
+        }
+        if ((end.getTime() - from.getTime() - 1) / bucket.toMillis() + 1 > maxBuckets) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "range must not span more than " + maxBuckets + " " + granularity + " buckets");
+        }
+        if (top < 0 || top > maxTop) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "top must be between 0 and " + maxTop);
+        }
+        return orderRollup.isReady()
+                ? orderRollup.findBuckets(from, end, granularity, top)
+                : customerOrderRepository.findBuckets(from, end, granularity, top);
+    }
+}
@@ -0,0 +1,42 @@
+package sockshop.orders.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import sockshop.orders.services.OrderOutcomes;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// GET /orders/stats : totaux par issue depuis le démarrage et débits (commandes/s) sur 1, 5 et 15 minutes
+@RestController
+public class OrderStatsController {
+
+    private static final List<Duration> WINDOWS = List.of(
+            Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(15));
+
+    @Autowired
+    private OrderOutcomes orderOutcomes;
+
+    @GetMapping(path = "/orders/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> stats() {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        orderOutcomes.totals().forEach((outcome, total) -> totals.put(outcome.getTag(), total));
+
+        Map<String, Map<String, Double>> rates = new LinkedHashMap<>();
+        for (Duration window : WINDOWS) {
+            Map<String, Double> windowRates = new LinkedHashMap<>();
+            orderOutcomes.rates(window).forEach((outcome, rate) -> windowRates.put(outcome.getTag(), rate));
+            rates.put(window.toMinutes() + "m", windowRates);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totals", totals);
+        stats.put("ratesPerSecond", rates);
+        return stats;
+    }
+}
@@ -1,34 +1,62 @@
 package sockshop.orders.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.opentelemetry.api.trace.Span;
-import io.opentelemetry.instrumentation.annotations.SpanAttribute;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.hateoas.EntityModel;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import sockshop.orders.entities.*;
 import sockshop.orders.repositories.CustomerOrderRepository;
 import sockshop.orders.resources.NewOrderResource;
+import sockshop.orders.resources.OrderSummary;
 import sockshop.orders.resources.PaymentRequest;
 import sockshop.orders.resources.PaymentResponse;
 import sockshop.orders.services.AsyncGetService;
+import sockshop.orders.services.CustomerOrderCache;
+import sockshop.orders.services.Deadline;
+import sockshop.orders.services.DeadlineExceededException;
+import sockshop.orders.services.IdempotencyStore;
+import sockshop.orders.services.OrderOutcomes;
+import sockshop.orders.services.OrderOutcomes.Outcome;
+import sockshop.orders.services.OrderPersistence;
+import sockshop.orders.services.OrderSaveInProgressException;
+import sockshop.orders.services.OrderSpanAttributes;
+import sockshop.orders.services.ShipmentOutbox;
+import sockshop.orders.services.Upstream;
+import sockshop.orders.services.UpstreamUnavailableException;
+import sockshop.orders.test.ProblemSimulator;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Calendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping
@@ -45,214 +73,323 @@ public class OrdersController {
     @Autowired
     private sockshop.orders.config.OrdersConfigurationProperties config;
 
-    @Value(value = "${http.timeout:5}")
-    private long timeout;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ProblemSimulator problemSimulator;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private ShipmentOutbox shipmentOutbox;
+
+    @Autowired
+    private OrderOutcomes orderOutcomes;
+
+    @Autowired
+    private OrderSpanAttributes spanAttributes;
+
+    @Autowired
+    private CustomerOrderCache customerOrderCache;
 
-    // Simulation config flags (set in application.properties)
-    @Value("${simulate.latency:false}")
-    private boolean simulateLatency;
+    @Autowired
+    private OrderPersistence orderPersistence;
 
-    @Value("${simulate.cpu:false}")
-    private boolean simulateCpu;
+    private Timer fanOutTimer;
 
-    @Value("${simulate.leak:false}")
-    private boolean simulateLeak;
+    // Budget total d'une commande (fan-out, paiement, expédition, enregistrement), en secondes
+    @Value(value = "${http.timeout:5}")
+    private long timeout;
 
-    @Value("${simulate.thread:false}")
-    private boolean simulateThread;
+    @Value("${http.min-request-timeout:200ms}")
+    private Duration minRequestTimeout;
 
-    @Value("${simulate.deadlock:false}")
-    private boolean simulateDeadlock;
+    @Value("${orders.page.max-limit:500}")
+    private int maxPageSize;
 
-    @Value("${simulate.error:false}")
-    private boolean simulateError;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @Value("${orders.payment-uri}")
     private String paymentUri;
 
-    // Static counter for successful orders
-    private static int successfulOrderCount = 0;
-
-    private static final List<byte[]> memoryLeakList = new CopyOnWriteArrayList<>();
+    @PostConstruct
+    public void initMetrics() {
+        fanOutTimer = Timer.builder("orders_fanout_duration")
+                .description("Time spent waiting for the address, customer, card and items lookups")
+                .register(meterRegistry);
+    }
 
     @ResponseStatus(HttpStatus.CREATED)
     @RequestMapping(path = "/orders", consumes = MediaType.APPLICATION_JSON_VALUE, method = RequestMethod.POST)
     @WithSpan("fn newOrder")
-    public @ResponseBody CustomerOrder newOrder(@SpanAttribute("item") @RequestBody NewOrderResource item) {
+    public @ResponseBody CustomerOrder newOrder(@RequestBody NewOrderResource item,
+                                                @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                                @RequestHeader(value = "X-Request-Timeout", required = false) Long requestTimeoutMillis,
+                                                HttpServletRequest request) {
         Span span = Span.current();
+        // Le client peut raccourcir le budget (en ms), pas l'allonger ni descendre sous min-request-timeout
+        Deadline deadline = Deadline.after(Duration.ofSeconds(timeout), requestTimeoutMillis, minRequestTimeout);
+        request.setAttribute(Deadline.REQUEST_ATTRIBUTE, deadline);
 
-        try {
-            simulateProblemsIfEnabled();
+        try (Deadline.Scope scope = deadline.bind()) {
+            problemSimulator.simulateProblemsIfEnabled();
 
             if (item.address == null || item.customer == null || item.card == null || item.items == null) {
+                orderOutcomes.record(Outcome.INVALID);
                 throw new InvalidOrderException("Invalid order request. Order requires customer, address, card and items.");
             }
 
             span.addEvent("Order request received");
 
+            if (idempotencyKey == null || idempotencyKey.isBlank()) {
+                return createOrder(item, span, deadline);
+            }
+            // Un client qui rejoue sa requête (même clé) reçoit la commande déjà créée, sans nouveau paiement
+            span.setAttribute("idempotencyKey", idempotencyKey);
+            return idempotencyStore.execute(idempotencyKey, IdempotencyStore.fingerprint(item), () -> createOrder(item, span, deadline));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Unable to create order due to unspecified IO error.", e);
+        } finally {
+            span.end();
+        }
+    }
+
+    // Une issue comptée par commande réellement tentée (pas pour une réponse rejouée par l'IdempotencyStore)
+    private CustomerOrder createOrder(NewOrderResource item, Span span, Deadline deadline) {
+        try {
+            CustomerOrder savedOrder = placeOrder(item, span, deadline);
+            LOG.info("Successful order count: {}", orderOutcomes.record(Outcome.SUCCESS));
+            return savedOrder;
+        } catch (RuntimeException e) {
+            orderOutcomes.record(outcomeOf(e));
+            throw e;
+        }
+    }
+
+    // Chaque attente ne reçoit que le temps restant de l'échéance ; une fois dépassée, rien de plus n'est lancé.
+    // Une fois le paiement accepté, l'échéance ne s'applique plus : expédition et enregistrement vont au bout
+    // sous leurs propres timeouts, pour ne pas débiter un client sans enregistrer sa commande.
+    private CustomerOrder placeOrder(NewOrderResource item, Span span, Deadline deadline) {
+        OrderSpanAttributes.Level traceLevel = spanAttributes.level(span);
+        try {
+            // Les quatre lectures sont indépendantes : on les lance toutes en même temps
+            // et on les attend sous l'échéance de la requête.
             LOG.debug("Starting calls");
-            Future<EntityModel<Address>> addressFuture = asyncGetService.getResource(item.address,
-                    new ParameterizedTypeReference<EntityModel<Address>>() {});
-            Address address = addressFuture.get(timeout, TimeUnit.SECONDS).getContent();
-            span.setAttribute("address", address.toString());
-            Future<EntityModel<Customer>> customerFuture = asyncGetService.getResource(item.customer,
-                    new ParameterizedTypeReference<EntityModel<Customer>>() {});
-            Customer customer = customerFuture.get(timeout, TimeUnit.SECONDS).getContent();
-            span.setAttribute("customer", customer.toString()); // Corrected to customer
-            Future<EntityModel<Card>> cardFuture = asyncGetService.getResource(item.card,
-                    new ParameterizedTypeReference<EntityModel<Card>>() {});
-            Card card = cardFuture.get(timeout, TimeUnit.SECONDS).getContent();
-            span.setAttribute("card", card.toString());
-            Future<List<Item>> itemsFuture = asyncGetService.getDataList(item.items,
-                    new ParameterizedTypeReference<List<Item>>() {});
-            List<Item> items = itemsFuture.get(timeout, TimeUnit.SECONDS);
-            span.setAttribute("items", items.toString());
+            long fanOutStart = System.nanoTime();
+            CompletableFuture<EntityModel<Address>> addressFuture = asyncGetService.getResource(Upstream.ADDRESS,
+                    item.address, new ParameterizedTypeReference<EntityModel<Address>>() {});
+            CompletableFuture<EntityModel<Customer>> customerFuture = asyncGetService.getResource(Upstream.CUSTOMER,
+                    item.customer, new ParameterizedTypeReference<EntityModel<Customer>>() {});
+            CompletableFuture<EntityModel<Card>> cardFuture = asyncGetService.getResource(Upstream.CARD,
+                    item.card, new ParameterizedTypeReference<EntityModel<Card>>() {});
+            CompletableFuture<List<Item>> itemsFuture = asyncGetService.getDataList(Upstream.ITEMS,
+                    item.items, new ParameterizedTypeReference<List<Item>>() {});
+            try {
+                CompletableFuture.allOf(addressFuture, customerFuture, cardFuture, itemsFuture)
+                        .get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+            } finally {
+                fanOutTimer.record(System.nanoTime() - fanOutStart, TimeUnit.NANOSECONDS);
+            }
+            Address address = addressFuture.join().getContent();
+            Customer customer = customerFuture.join().getContent();
+            Card card = cardFuture.join().getContent();
+            List<Item> items = itemsFuture.join();
             LOG.debug("End of calls.");
 
-            float amount = calculateTotal(itemsFuture.get(timeout, TimeUnit.SECONDS));
-            span.setAttribute("amount", amount);
+            float amount = calculateTotal(items);
+            spanAttributes.lookups(span, traceLevel, address, customer, card, items, amount);
 
             // Call payment service to make sure they've paid
-            PaymentRequest paymentRequest = new PaymentRequest(
-                    addressFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    cardFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    customerFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    amount);
-            LOG.info("Sending payment request: " + paymentRequest);
+            PaymentRequest paymentRequest = new PaymentRequest(address, card, customer, amount);
+            LOG.debug("Sending payment request: {}", paymentRequest);
             Future<PaymentResponse> paymentFuture = asyncGetService.postResource(
+                    Upstream.PAYMENT,
                     URI.create(paymentUri),
                     paymentRequest,
                     new ParameterizedTypeReference<PaymentResponse>() {});
-            PaymentResponse paymentResponse = paymentFuture.get(timeout, TimeUnit.SECONDS);
-            LOG.info("Received payment response: " + paymentResponse);
-            span.setAttribute("paymentResponse", paymentResponse.toString());
+            PaymentResponse paymentResponse = paymentFuture.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+            LOG.debug("Received payment response: {}", paymentResponse);
+            spanAttributes.payment(span, traceLevel, paymentResponse);
             if (!paymentResponse.isAuthorised()) {
-                span.setAttribute("paymentStatus", "unauthorised");
                 throw new PaymentDeclinedException(paymentResponse.getMessage());
             }
-            span.setAttribute("paymentStatus", "authorised");
-
-            // Ship
-            String customerId = parseId(customerFuture.get(timeout, TimeUnit.SECONDS).getContent().getId());
-            Future<Shipment> shipmentFuture = asyncGetService.postResource(config.getShippingUri(), new Shipment(customerId),
-                    new ParameterizedTypeReference<Shipment>() {});
-
-            CustomerOrder order = new CustomerOrder(
-                    null,
-                    customerId,
-                    customerFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    addressFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    cardFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    itemsFuture.get(timeout, TimeUnit.SECONDS),
-                    shipmentFuture.get(timeout, TimeUnit.SECONDS),
-                    Calendar.getInstance().getTime(),
-                    amount);
-            LOG.debug("Received data: " + order.toString());
-            span.setAttribute("order", order.toString());
-
-            CustomerOrder savedOrder = customerOrderRepository.save(order);
-            LOG.debug("Saved order: " + savedOrder);
-            span.setAttribute("saved order", savedOrder.toString());
-
-            // Increment counter on successful save
-            successfulOrderCount++;
-            LOG.info("Successful order count: {}", successfulOrderCount);
 
-            return savedOrder;
-        } catch (TimeoutException e) {
+            try (Deadline.Scope paid = Deadline.suspend()) {
+                // Ship
+                String customerId = parseId(customer.getId());
+                Shipment shipment;
+                if (shipmentOutbox.isEnabled()) {
+                    // Envoyée après la réponse par ShipmentDispatcher
+                    shipment = new Shipment(customerId);
+                } else {
+                    Future<Shipment> shipmentFuture = asyncGetService.postResource(Upstream.SHIPPING, config.getShippingUri(),
+                            new Shipment(customerId), new ParameterizedTypeReference<Shipment>() {});
+                    shipment = shipmentFuture.get(timeout, TimeUnit.SECONDS);
+                }
+
+                CustomerOrder order = new CustomerOrder(
+                        null,
+                        customerId,
+                        customer,
+                        address,
+                        card,
+                        items,
+                        shipment,
+                        Calendar.getInstance().getTime(),
+                        amount);
+                LOG.debug("Received data: {}", order);
+
+                CustomerOrder savedOrder;
+                try {
+                    savedOrder = orderPersistence.save(order);
+                } catch (OrderSaveInProgressException e) {
+                    e.getSaved().thenAccept(late -> customerOrderCache.saved(List.of(late)));
+                    throw e;
+                }
+                LOG.debug("Saved order: {}", savedOrder);
+                customerOrderCache.saved(List.of(savedOrder));
+                spanAttributes.savedOrder(span, traceLevel, savedOrder);
+
+                return savedOrder;
+            }
+        } catch (TimeoutException | DeadlineExceededException e) {
             throw new IllegalStateException("Unable to create order due to timeout from one of the services.", e);
-        } catch (InterruptedException | IOException | ExecutionException e) {
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DeadlineExceededException expired) {
+                throw new IllegalStateException("Unable to create order due to timeout from one of the services.", expired);
+            }
+            // Circuit ouvert ou bulkhead plein : 503 immédiat plutôt qu'une erreur générique
+            if (e.getCause() instanceof UpstreamUnavailableException unavailable) {
+                throw unavailable;
+            }
+            throw new IllegalStateException("Unable to create order due to unspecified IO error.", e);
+        } catch (InterruptedException | IOException e) {
             throw new IllegalStateException("Unable to create order due to unspecified IO error.", e);
-        } finally {
-            span.end();
         }
     }
 
+    // GET /orders : tableau JSON écrit au fil du curseur Mongo, sans charger la collection en mémoire
     @GetMapping(path = "/orders", produces = MediaType.APPLICATION_JSON_VALUE)
     @WithSpan("fn getAllOrders")
-    public List<CustomerOrder> getAllOrders() throws InterruptedException {
-        simulateProblemsIfEnabled();
-        return customerOrderRepository.findAll();
+    public ResponseEntity<StreamingResponseBody> getAllOrders(@RequestParam(required = false) String after)
+            throws InterruptedException {
+        problemSimulator.simulateProblemsIfEnabled();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> writeOrders(out, after, 0, false));
     }
 
-    private String parseId(String href) {
-        Matcher matcher = Pattern.compile("[\\w-]+$").matcher(href);
-        if (!matcher.find()) throw new IllegalStateException("Invalid ID format: " + href);
-        return matcher.group(0);
+    // GET /orders?limit=N[&after=<id>] : page triée par id, lien "next" vers la page suivante
+    @GetMapping(path = "/orders", params = "limit", produces = MediaType.APPLICATION_JSON_VALUE)
+    @WithSpan("fn getOrdersPage")
+    public ResponseEntity<List<CustomerOrder>> getOrdersPage(@RequestParam(required = false) String after,
+                                                             @RequestParam int limit) throws InterruptedException {
+        problemSimulator.simulateProblemsIfEnabled();
+        List<CustomerOrder> page = customerOrderRepository.findPageAfter(after, checkLimit(limit));
+        return pageResponse(page.size() == limit ? page.get(page.size() - 1).getId() : null).body(page);
     }
 
-    private float calculateTotal(List<Item> items) {
-        float amount = 0F;
-        float shipping = 4.99F;
-        amount += items.stream().mapToDouble(i -> i.getQuantity() * i.getUnitPrice()).sum();
-        return amount + shipping;
+    // GET /orders/summaries[?customerId=<id>][&limit=N][&after=<id>] : id, client, date, total et nombre d'articles,
+    // projetés par Mongo ; pour les listes qui n'ont pas besoin de la commande complète
+    @GetMapping(path = "/orders/summaries", produces = MediaType.APPLICATION_JSON_VALUE)
+    @WithSpan("fn getOrderSummaries")
+    public ResponseEntity<List<OrderSummary>> getOrderSummaries(@RequestParam(required = false) String customerId,
+                                                                @RequestParam(required = false) String after,
+                                                                @RequestParam(required = false) Integer limit)
+            throws InterruptedException {
+        problemSimulator.simulateProblemsIfEnabled();
+        int max = limit == null ? maxPageSize : checkLimit(limit);
+        List<OrderSummary> page = customerOrderRepository.findSummariesAfter(customerId, after, max);
+        return pageResponse(page.size() == max ? page.get(page.size() - 1).getId() : null).body(page);
     }
 
-    private void simulateProblemsIfEnabled() throws InterruptedException {
-        if (simulateLatency) {
-            Thread.sleep(3000);
-            LOG.warn("🕒 Simulated latency (3s)");
+    // Lien "next" vers la page qui suit lastId (null = dernière page)
+    private ResponseEntity.BodyBuilder pageResponse(String lastId) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (lastId != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", lastId)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
         }
+        return response;
+    }
 
-        if (simulateCpu) {
-            for (int i = 0; i < 5_000_000; i++) {
-                Math.log(Math.sqrt(i + 1));
-            }
-            LOG.warn("🔥 Simulated CPU spike");
-        }
+    // GET /orders en NDJSON (Accept: application/x-ndjson) : une commande par ligne, au fil du curseur
+    @GetMapping(path = "/orders", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @WithSpan("fn streamOrders")
+    public ResponseEntity<StreamingResponseBody> streamOrders(@RequestParam(required = false) String after,
+                                                              @RequestParam(required = false) Integer limit)
+            throws InterruptedException {
+        problemSimulator.simulateProblemsIfEnabled();
+        int max = limit == null ? 0 : checkLimit(limit);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> writeOrders(out, after, max, true));
+    }
 
-        if (simulateLeak) {
-            byte[] leak = new byte[10 * 1024 * 1024];
-            memoryLeakList.add(leak);
-            LOG.warn("💾 Simulated memory leak ({} blocks)", memoryLeakList.size());
+    private void writeOrders(OutputStream out, String after, int limit, boolean ndjson) throws IOException {
+        try (Stream<CustomerOrder> orders = customerOrderRepository.streamAfter(after, limit);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (ndjson) {
+                generator.setRootValueSeparator(null);
+            } else {
+                generator.writeStartArray();
+            }
+            Iterator<CustomerOrder> it = orders.iterator();
+            while (it.hasNext()) {
+                generator.writeObject(it.next());
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+            }
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
         }
+    }
 
-        if (simulateThread) {
-            new Thread(() -> {
-                while (true) {
-                    try { Thread.sleep(1000); } catch (InterruptedException ignored) {}
-                }
-            }).start();
-            LOG.warn("🧵 Simulated thread creation");
+    private int checkLimit(int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxPageSize);
         }
+        return limit;
+    }
 
-        if (simulateDeadlock) {
-            final Object lock1 = new Object();
-            final Object lock2 = new Object();
-
-            Thread t1 = new Thread(() -> {
-                synchronized (lock1) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException ignored) {}
-                    synchronized (lock2) {
-                        LOG.warn("🔒 Thread 1 acquired both locks");
-                    }
-                }
-            });
-
-            Thread t2 = new Thread(() -> {
-                synchronized (lock2) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException ignored) {}
-                    synchronized (lock1) {
-                        LOG.warn("🔒 Thread 2 acquired both locks");
-                    }
-                }
-            });
+    static String parseId(String href) {
+        Matcher matcher = Pattern.compile("[\\w-]+$").matcher(href);
+        if (!matcher.find()) throw new IllegalStateException("Invalid ID format: " + href);
+        return matcher.group(0);
+    }
 
-            t1.start();
-            t2.start();
+    static float calculateTotal(List<Item> items) {
+        float amount = 0F;
+        float shipping = 4.99F;
+        amount += items.stream().mapToDouble(i -> i.getQuantity() * i.getUnitPrice()).sum();
+        return amount + shipping;
+    }
 
-            LOG.warn("🔒 Simulated deadlock launched with 2 threads");
+    // Classement d'un échec de commande, partagé avec le batch et le pipeline réactif
+    static Outcome outcomeOf(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
         }
-
-        // New logic: Fail the 6th request when simulate.error is true
-        if (simulateError && successfulOrderCount >=5) {
-            LOG.error("💥 Simulated error thrown (6th request or more)");
-            throw new RuntimeException("Simulated error: 6th request failed");
+        if (e instanceof InvalidOrderException) {
+            return Outcome.INVALID;
+        }
+        if (e instanceof PaymentDeclinedException) {
+            return Outcome.DECLINED;
+        }
+        if (e instanceof TimeoutException || e instanceof DeadlineExceededException
+                || e instanceof OrderSaveInProgressException
+                || e.getCause() instanceof TimeoutException || e.getCause() instanceof DeadlineExceededException) {
+            return Outcome.TIMEOUT;
         }
+        return Outcome.UPSTREAM_ERROR;
     }
 
     @ResponseStatus(value = HttpStatus.NOT_ACCEPTABLE)
@@ -0,0 +1,180 @@
+package sockshop.orders.controllers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import sockshop.orders.config.OrdersConfigurationProperties;
+import sockshop.orders.controllers.OrdersController.InvalidOrderException;
+import sockshop.orders.controllers.OrdersController.PaymentDeclinedException;
+import sockshop.orders.entities.*;
+import sockshop.orders.resources.NewOrderResource;
+import sockshop.orders.resources.PaymentRequest;
+import sockshop.orders.resources.PaymentResponse;
+import sockshop.orders.services.CustomerOrderCache;
+import sockshop.orders.services.Deadline;
+import sockshop.orders.services.IdempotencyStore;
+import sockshop.orders.services.OrderOutcomes;
+import sockshop.orders.services.OrderOutcomes.Outcome;
+import sockshop.orders.services.OrderPersistence;
+import sockshop.orders.services.OrderSaveInProgressException;
+import sockshop.orders.services.ReactiveGetService;
+import sockshop.orders.services.ShipmentOutbox;
+import sockshop.orders.services.Upstream;
+import sockshop.orders.test.ProblemSimulator;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+// POST /orders en pipeline non bloquant (orders.pipeline=reactive) : mêmes étapes et même réponse
+// qu'OrdersController.newOrder, avec WebClient à la place d'AsyncGetService. Mêmes services pour le reste :
+// échéance (X-Request-Timeout), Idempotency-Key, OrderPersistence (modes d'écriture, outbox, cumuls) et
+// cache des commandes, par leurs variantes réactives : aucun thread n'attend Mongo ni un premier essai.
+@Component
+@ConditionalOnProperty(name = "orders.pipeline", havingValue = "reactive")
+public class ReactiveOrdersHandler {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private ReactiveGetService reactiveGetService;
+
+    @Autowired
+    private OrderPersistence orderPersistence;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private ShipmentOutbox shipmentOutbox;
+
+    @Autowired
+    private OrdersConfigurationProperties config;
+
+    @Autowired
+    private ProblemSimulator problemSimulator;
+
+    @Autowired
+    private OrderOutcomes orderOutcomes;
+
+    @Autowired
+    private CustomerOrderCache customerOrderCache;
+
+    @Value(value = "${http.timeout:5}")
+    private long timeout;
+
+    @Value("${http.min-request-timeout:200ms}")
+    private Duration minRequestTimeout;
+
+    @Value("${orders.payment-uri}")
+    private String paymentUri;
+
+    public ServerResponse newOrder(ServerRequest request) throws Exception {
+        NewOrderResource item = request.body(NewOrderResource.class);
+        // Le client peut raccourcir le budget (en ms), pas l'allonger ni descendre sous min-request-timeout
+        Long requestTimeoutMillis = request.headers().firstHeader("X-Request-Timeout") == null ? null
+                : Long.valueOf(request.headers().firstHeader("X-Request-Timeout"));
+        Deadline deadline = Deadline.after(Duration.ofSeconds(timeout), requestTimeoutMillis, minRequestTimeout);
+        request.servletRequest().setAttribute(Deadline.REQUEST_ATTRIBUTE, deadline);
+        problemSimulator.simulateProblemsIfEnabled();
+
+        if (item.address == null || item.customer == null || item.card == null || item.items == null) {
+            orderOutcomes.record(Outcome.INVALID);
+            throw new InvalidOrderException("Invalid order request. Order requires customer, address, card and items.");
+        }
+
+        String idempotencyKey = request.headers().firstHeader("Idempotency-Key");
+        Mono<CustomerOrder> order;
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            order = createOrder(item, deadline);
+        } else {
+            // L'échéance, lue à l'appel, borne l'attente d'un premier essai de la même clé
+            try (Deadline.Scope scope = deadline.bind()) {
+                order = idempotencyStore.executeReactive(idempotencyKey, IdempotencyStore.fingerprint(item),
+                        () -> createOrder(item, deadline));
+            }
+        }
+        return ServerResponse.async(order
+                .map(savedOrder -> ServerResponse.status(HttpStatus.CREATED).body(savedOrder)));
+    }
+
+    // Lectures et paiement sous le temps restant de l'échéance ; une fois le paiement accepté, expédition et
+    // enregistrement vont au bout sous leurs propres timeouts (comme OrdersController.placeOrder)
+    Mono<CustomerOrder> createOrder(NewOrderResource item, Deadline deadline) {
+        Duration stageTimeout = Duration.ofSeconds(timeout);
+
+        Mono<EntityModel<Address>> address = reactiveGetService.getResource(Upstream.ADDRESS,
+                item.address, new ParameterizedTypeReference<EntityModel<Address>>() {});
+        Mono<EntityModel<Customer>> customer = reactiveGetService.getResource(Upstream.CUSTOMER,
+                item.customer, new ParameterizedTypeReference<EntityModel<Customer>>() {});
+        Mono<EntityModel<Card>> card = reactiveGetService.getResource(Upstream.CARD,
+                item.card, new ParameterizedTypeReference<EntityModel<Card>>() {});
+        Mono<List<Item>> items = reactiveGetService.getDataList(Upstream.ITEMS,
+                item.items, new ParameterizedTypeReference<List<Item>>() {});
+
+        return Mono.zip(address, customer, card, items)
+                .timeout(Mono.defer(() -> Mono.delay(Duration.ofNanos(deadline.remainingNanos()))))
+                .flatMap(parts -> payAndShip(parts.getT1().getContent(), parts.getT2().getContent(),
+                        parts.getT3().getContent(), parts.getT4(), deadline, stageTimeout))
+                .flatMap(order -> orderPersistence.saveReactive(order)
+                        .doOnError(OrderSaveInProgressException.class, e ->
+                                e.getSaved().thenAccept(late -> customerOrderCache.saved(List.of(late)))))
+                .doOnNext(savedOrder -> {
+                    LOG.debug("Saved order: {}", savedOrder);
+                    customerOrderCache.saved(List.of(savedOrder));
+                    LOG.info("Successful order count: {}", orderOutcomes.record(Outcome.SUCCESS));
+                })
+                .onErrorMap(TimeoutException.class, e ->
+                        new IllegalStateException("Unable to create order due to timeout from one of the services.", e))
+                .onErrorMap(e -> !(e instanceof IllegalStateException), e ->
+                        new IllegalStateException("Unable to create order due to unspecified IO error.", e))
+                .doOnError(e -> orderOutcomes.record(OrdersController.outcomeOf(e)));
+    }
+
+    private Mono<CustomerOrder> payAndShip(Address address, Customer customer, Card card, List<Item> items,
+                                           Deadline deadline, Duration stageTimeout) {
+        float amount = OrdersController.calculateTotal(items);
+        PaymentRequest paymentRequest = new PaymentRequest(address, card, customer, amount);
+        LOG.debug("Sending payment request: {}", paymentRequest);
+
+        return reactiveGetService.postResource(Upstream.PAYMENT, URI.create(paymentUri), paymentRequest,
+                        new ParameterizedTypeReference<PaymentResponse>() {})
+                .timeout(Mono.defer(() -> Mono.delay(Duration.ofNanos(deadline.remainingNanos()))))
+                .flatMap(paymentResponse -> {
+                    LOG.debug("Received payment response: {}", paymentResponse);
+                    if (!paymentResponse.isAuthorised()) {
+                        return Mono.error(new PaymentDeclinedException(paymentResponse.getMessage()));
+                    }
+                    String customerId = OrdersController.parseId(customer.getId());
+                    // Envoyée après la réponse par ShipmentDispatcher en mode outbox
+                    Mono<Shipment> ship = shipmentOutbox.isEnabled()
+                            ? Mono.just(new Shipment(customerId))
+                            : reactiveGetService.postResource(Upstream.SHIPPING, config.getShippingUri(),
+                                            new Shipment(customerId), new ParameterizedTypeReference<Shipment>() {})
+                                    .timeout(stageTimeout);
+                    return ship
+                            .map(shipment -> new CustomerOrder(
+                                    null,
+                                    customerId,
+                                    customer,
+                                    address,
+                                    card,
+                                    items,
+                                    shipment,
+                                    Calendar.getInstance().getTime(),
+                                    amount));
+                });
+    }
+}
@@ -1,6 +1,9 @@
 package sockshop.orders.entities;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.IndexDirection;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Calendar;
@@ -11,11 +14,13 @@ import java.util.Objects;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 @Document(collection = "CustomerOrder")
+@CompoundIndex(name = "customerId_date", def = "{'customerId': 1, 'date': -1}") // historique d'un client, du plus récent au plus ancien
 public class CustomerOrder {
 
     @Id
     private String id;
 
+    @Indexed(name = "customerId")
     private String customerId;
 
     private Customer customer;
@@ -28,6 +33,7 @@ public class CustomerOrder {
 
     private Shipment shipment;
 
+    @Indexed(name = "date", direction = IndexDirection.DESCENDING)
     private Date date = Calendar.getInstance().getTime();
 
     private float total;
@@ -0,0 +1,83 @@
+package sockshop.orders.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// Clé Idempotency-Key reçue sur POST /orders (mode orders.idempotency.store=mongo)
+@Document(collection = "IdempotencyKey")
+public class IdempotencyRecord {
+
+    public static final String PENDING = "PENDING";
+    public static final String DONE = "DONE";
+
+    @Id
+    private String key;
+
+    private String fingerprint;
+    private String status;
+    private String orderId;
+    private Date createdAt;
+
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String key, String fingerprint) {
+        this.key = key;
+        this.fingerprint = fingerprint;
+        this.status = PENDING;
+        this.createdAt = new Date();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotencyRecord{" +
+                "key='" + key + '\'' +
+                ", fingerprint='" + fingerprint + '\'' +
+                ", status='" + status + '\'' +
+                ", orderId='" + orderId + '\'' +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
@@ -0,0 +1,131 @@
+package sockshop.orders.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// Expédition en attente d'envoi au service shipping, écrite dans la même transaction que la commande.
+// _id = id de la commande (une seule expédition par commande) ; les enregistrements plus anciens ont un ObjectId.
+@Document(collection = "ShipmentOutbox")
+@CompoundIndexes({
+        @CompoundIndex(name = "status_nextAttemptAt", def = "{'status': 1, 'nextAttemptAt': 1}"), // prochains envois
+        @CompoundIndex(name = "status_createdAt", def = "{'status': 1, 'createdAt': 1}") // plus ancienne en attente
+})
+public class OutboxShipment {
+
+    public static final String PENDING = "PENDING";
+    public static final String SENT = "SENT";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    private String id;
+
+    private String orderId;
+    private Shipment shipment;
+    private String status;
+    private int attempts;
+    private Date createdAt;
+    private Date nextAttemptAt;
+    private Date sentAt;
+    private String lastError;
+
+    public OutboxShipment() {
+    }
+
+    public OutboxShipment(String orderId, Shipment shipment) {
+        this.id = orderId;
+        this.orderId = orderId;
+        this.shipment = shipment;
+        this.status = PENDING;
+        this.createdAt = new Date();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+
+    public Shipment getShipment() {
+        return shipment;
+    }
+
+    public void setShipment(Shipment shipment) {
+        this.shipment = shipment;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Date nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public Date getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(Date sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxShipment{" +
+                "id='" + id + '\'' +
+                ", orderId='" + orderId + '\'' +
+                ", shipment=" + shipment +
+                ", status='" + status + '\'' +
+                ", attempts=" + attempts +
+                ", createdAt=" + createdAt +
+                ", nextAttemptAt=" + nextAttemptAt +
+                '}';
+    }
+}
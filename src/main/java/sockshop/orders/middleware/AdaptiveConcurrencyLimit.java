@@ -0,0 +1,151 @@
+package sockshop.orders.middleware;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Limite de concurrence adaptative, sur le principe du gradient de Netflix concurrency-limits :
+// gradient = tolerance x latence sans file (min RTT) / latence récente. Tant que la latence récente reste sous
+// tolerance x min RTT, la limite monte d'environ sqrt(limite) par requête ; au-delà (une file se forme, en amont
+// ou dans le service) le gradient passe sous 1 et la limite baisse. Une erreur serveur la multiplie par
+// backoff-ratio (AIMD). La limite n'est recalculée qu'une fois par fenêtre (100 ms et 10 requêtes au moins),
+// sur la latence moyenne de la fenêtre, pour ne pas surréagir avant que la file n'ait eu le temps de se vider.
+// Le min RTT est remesuré quand il a plus de min-rtt-window : la limite est divisée par deux
+// pendant probe-duration pour vider la file, comme la phase ProbeRTT de BBR.
+public class AdaptiveConcurrencyLimit {
+
+    private static final long WINDOW_NANOS = 100_000_000L;
+    private static final int WINDOW_MIN_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final long minRttWindowNanos;
+    private final long probeNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile int limit;
+
+    // Protégés par this
+    private double estimatedLimit;
+    private long minRtt;
+    private long minRttAt;
+    private long probeUntil;
+    private long probeMinRtt;
+    private boolean probing;
+    private long windowStart;
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing,
+                                    double backoffRatio, Duration minRttWindow, Duration probeDuration) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalStateException("Concurrency limit bounds must satisfy 1 <= min <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.backoffRatio = backoffRatio;
+        this.minRttWindowNanos = minRttWindow.toNanos();
+        this.probeNanos = probeDuration.toNanos();
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // À appeler une fois par tryAcquire réussi, avec la durée de la requête
+    public void release(long rttNanos, boolean dropped) {
+        release(rttNanos, dropped, System.nanoTime());
+    }
+
+    // now : horloge fournie par les tests
+    void release(long rttNanos, boolean dropped, long now) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        update(rttNanos, inFlightBefore, dropped, now);
+    }
+
+    // Requête dont la durée ne dit rien de la charge (échéance raccourcie par le client et dépassée) :
+    // la place est rendue sans échantillon, qui abaisserait le min RTT ou ferait reculer la limite
+    public void ignore() {
+        inFlight.decrementAndGet();
+    }
+
+    private synchronized void update(long rttNanos, int inFlightBefore, boolean dropped, long now) {
+        if (probing) {
+            probeMinRtt = Math.min(probeMinRtt, rttNanos);
+            if (now - probeUntil >= 0) {
+                minRtt = probeMinRtt;
+                minRttAt = now;
+                probing = false;
+                limit = (int) estimatedLimit;
+                resetWindow(now);
+            }
+            return;
+        }
+        if (minRtt == 0 || rttNanos <= minRtt) {
+            minRtt = rttNanos;
+            minRttAt = now;
+        } else if (now - minRttAt > minRttWindowNanos) {
+            probing = true;
+            probeUntil = now + probeNanos;
+            probeMinRtt = rttNanos;
+            limit = Math.max(minLimit, (int) (estimatedLimit / 2));
+            return;
+        }
+
+        if (windowSamples == 0) {
+            windowStart = now;
+        }
+        windowRttSum += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightBefore);
+        windowDropped |= dropped;
+        if (windowSamples < WINDOW_MIN_SAMPLES || now - windowStart < WINDOW_NANOS) {
+            return;
+        }
+
+        if (windowDropped) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+        } else if (windowMaxInFlight >= estimatedLimit / 2) {
+            // En dessous de la moitié de la limite, le service est sous-utilisé : pas de raison de la monter
+            double averageRtt = (double) windowRttSum / windowSamples;
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * minRtt / averageRtt));
+            double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                    estimatedLimit * (1 - smoothing) + newLimit * smoothing));
+        }
+        limit = (int) estimatedLimit;
+        resetWindow(now);
+    }
+
+    private void resetWindow(long now) {
+        windowStart = now;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
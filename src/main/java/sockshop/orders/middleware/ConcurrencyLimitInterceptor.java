@@ -0,0 +1,83 @@
+package sockshop.orders.middleware;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import sockshop.orders.services.Deadline;
+
+import java.io.IOException;
+
+// Limite adaptative du nombre de POST /orders en cours (servlet et pipeline réactif) : au-delà, réponse 503
+// immédiate avec Retry-After plutôt qu'une attente dans les threads Tomcat jusqu'aux timeouts amont.
+// Une instance par route (/orders, /orders/batch), métriques étiquetées route.
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String START_TIME = ConcurrencyLimitInterceptor.class.getName() + ".startTime";
+
+    private final AdaptiveConcurrencyLimit limit;
+    private final String retryAfterSeconds;
+    private final Counter rejections;
+
+    public ConcurrencyLimitInterceptor(AdaptiveConcurrencyLimit limit, String route, long retryAfterSeconds,
+                                       MeterRegistry meterRegistry) {
+        this.limit = limit;
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+
+        Gauge.builder("orders_concurrency_limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Current adaptive limit of concurrent POST /orders requests")
+                .tag("route", route)
+                .register(meterRegistry);
+        Gauge.builder("orders_concurrency_in_flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("POST /orders requests currently admitted")
+                .tag("route", route)
+                .register(meterRegistry);
+        this.rejections = Counter.builder("orders_concurrency_rejections")
+                .description("POST /orders requests rejected with 503 by the concurrency limit")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        // Le dispatch ASYNC (pipeline réactif) continue une requête déjà admise
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !"POST".equals(request.getMethod())) {
+            return true;
+        }
+        if (!limit.tryAcquire()) {
+            rejections.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many orders in progress");
+            return false;
+        }
+        request.setAttribute(START_TIME, System.nanoTime());
+        return true;
+    }
+
+    // Appelé à la fin de la requête, ou à la fin du dispatch ASYNC quand la réponse est asynchrone
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.isAsyncStarted()) {
+            return;
+        }
+        Object start = request.getAttribute(START_TIME);
+        if (!(start instanceof Long)) {
+            return;
+        }
+        request.removeAttribute(START_TIME);
+        if (request.getAttribute(Deadline.REQUEST_ATTRIBUTE) instanceof Deadline deadline
+                && deadline.isRequestedByClient() && deadline.isExpired()) {
+            limit.ignore();
+            return;
+        }
+        // Timeout ou erreur amont (5xx) : signe de surcharge, la limite recule
+        boolean dropped = ex != null || response.getStatus() >= 500;
+        limit.release(System.nanoTime() - (Long) start, dropped);
+    }
+}
@@ -3,31 +3,48 @@ package sockshop.orders.middleware;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
-import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.HandlerMapping;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 
 public class HTTPMonitoringInterceptor implements HandlerInterceptor {
 
-    private final MeterRegistry meterRegistry;
     private static final String START_TIME = "startTime";
+
+    // Route hors limite (max-routes atteint) ou requête sans handler (404, ressource statique...)
+    static final String OTHER_ROUTE = "OTHER";
+    static final String UNKNOWN_ROUTE = "UNKNOWN";
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "PATCH", "DELETE", "HEAD", "OPTIONS", "OTHER"};
+    private static final String[] STATUS_CLASSES = {"unknown", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final MeterRegistry meterRegistry;
     private final Counter requestCounter;
     private final Counter errorCounter;
+    private final int maxRoutes;
+
+    // Timers par modèle de route (/orders/{id}, pas l'URI brute), puis par méthode et classe de statut :
+    // après le premier appel, une requête ne fait ni lookup dans le registre ni allocation de tags
+    private final ConcurrentMap<String, AtomicReferenceArray<Timer>> timersByRoute = new ConcurrentHashMap<>();
 
-    public HTTPMonitoringInterceptor(MeterRegistry meterRegistry) {
+    public HTTPMonitoringInterceptor(MeterRegistry meterRegistry, int maxRoutes) {
         this.meterRegistry = meterRegistry;
-        
+        this.maxRoutes = maxRoutes;
+
         // Initialisation des compteurs
         this.requestCounter = Counter.builder("http_requests_total")
                 .description("Total HTTP requests")
                 .tag("component", "http_interceptor")
                 .register(meterRegistry);
-                
+
         this.errorCounter = Counter.builder("http_errors_total")
                 .description("Total HTTP error responses")
                 .tag("component", "http_interceptor")
@@ -36,43 +53,85 @@ public class HTTPMonitoringInterceptor implements HandlerInterceptor {
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        request.setAttribute(START_TIME, System.nanoTime());
-        requestCounter.increment(); // Incrémente le compteur de requêtes
+        // Une requête asynchrone repasse ici au dispatch ASYNC : on garde l'heure de début de la requête initiale
+        if (request.getDispatcherType() != DispatcherType.ASYNC) {
+            request.setAttribute(START_TIME, System.nanoTime());
+            requestCounter.increment(); // Incrémente le compteur de requêtes
+        }
         return true;
     }
 
+    // Mesure dans afterCompletion plutôt que postHandle : les requêtes terminées par une exception sont aussi chronométrées
     @Override
-    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
-        Long start = (Long) request.getAttribute(START_TIME);
-        if (start != null) {
-            long elapsed = System.nanoTime() - start;
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_TIME);
+        if (!(start instanceof Long)) {
+            return;
+        }
+        long elapsed = System.nanoTime() - (Long) start;
 
-            // Enregistrement du temps de réponse
-            Timer.builder("http_server_requests_custom")
-                    .description("Custom HTTP request latency")
-                    .tags("method", request.getMethod(),
-                          "uri", request.getRequestURI(),
-                          "status", String.valueOf(response.getStatus()),
-                          "host", request.getServerName())
-                    .register(meterRegistry)
-                    .record(elapsed, TimeUnit.NANOSECONDS);
-
-            // Comptage des erreurs (4xx et 5xx)
-            if (response.getStatus() >= 400) {
-                errorCounter.increment();
-            }
+        int status = response.getStatus();
+        // Exception non résolue : le conteneur répondra 500
+        if (ex != null && status < 400) {
+            status = 500;
         }
-    }
+        String route = route(request);
+        timer(route, request.getMethod(), status).record(elapsed, TimeUnit.NANOSECONDS);
 
-    @Override
-    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
-        // Vous pourriez ajouter un traitement supplémentaire ici si nécessaire
-        // Par exemple, suivre les exceptions non attrapées
+        // Comptage des erreurs (4xx et 5xx)
+        if (status >= 400) {
+            errorCounter.increment();
+        }
         if (ex != null) {
             meterRegistry.counter("http_exceptions_total",
                     "exception", ex.getClass().getSimpleName(),
-                    "uri", request.getRequestURI())
+                    "uri", route)
                 .increment();
         }
     }
-}
\ No newline at end of file
+
+    private static String route(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern instanceof String ? (String) pattern : UNKNOWN_ROUTE;
+    }
+
+    private Timer timer(String route, String method, int status) {
+        String key = route;
+        AtomicReferenceArray<Timer> timers = timersByRoute.get(route);
+        if (timers == null) {
+            // Au-delà de max-routes, les nouvelles routes partagent les séries OTHER
+            if (timersByRoute.size() >= maxRoutes) {
+                key = OTHER_ROUTE;
+            }
+            timers = timersByRoute.computeIfAbsent(key, r -> new AtomicReferenceArray<>(METHODS.length * STATUS_CLASSES.length));
+        }
+        int methodIndex = methodIndex(method);
+        int statusIndex = status >= 100 && status < 600 ? status / 100 : 0;
+        int slot = methodIndex * STATUS_CLASSES.length + statusIndex;
+        Timer timer = timers.get(slot);
+        if (timer == null) {
+            // Course bénigne : register renvoie le même Timer pour les mêmes tags
+            timer = Timer.builder("http_server_requests_custom")
+                    .description("Custom HTTP request latency")
+                    .tags("method", METHODS[methodIndex],
+                          "uri", key,
+                          "status", STATUS_CLASSES[statusIndex])
+                    .register(meterRegistry);
+            timers.set(slot, timer);
+        }
+        return timer;
+    }
+
+    private static int methodIndex(String method) {
+        switch (method) {
+            case "GET": return 0;
+            case "POST": return 1;
+            case "PUT": return 2;
+            case "PATCH": return 3;
+            case "DELETE": return 4;
+            case "HEAD": return 5;
+            case "OPTIONS": return 6;
+            default: return 7;
+        }
+    }
+}
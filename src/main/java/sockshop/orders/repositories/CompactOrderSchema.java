@@ -0,0 +1,202 @@
+package sockshop.orders.repositories;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.stereotype.Component;
+
+import sockshop.orders.entities.CustomerOrder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Format compact des documents CustomerOrder (orders.mongo.schema=compact) : noms de champs courts, instantanés réduits
+// à ce qu'une commande utilise (ni ids HAL des sous-objets, ni listes @DBRef du client, ni cryptogramme de la carte)
+// et montants en centimes entiers. Les champs interrogés et indexés (_id, customerId, date) gardent leur nom.
+// Le document mappé par Spring Data est réécrit juste avant l'écriture et, à la lecture, un document compact est
+// remis au format historique avant le mapping : les deux formats se lisent quel que soit le réglage.
+//
+// { _id, v: 2, customerId, date, c: {f, l, u}, a: {n, s, c, p, k}, k: {n, e}, i: [{i, q, p}], s, t }
+@Component
+public class CompactOrderSchema extends AbstractMongoEventListener<CustomerOrder> {
+
+    public static final String VERSION = "v";
+    public static final int COMPACT = 2;
+
+    static final String CUSTOMER = "c";
+    static final String ADDRESS = "a";
+    static final String CARD = "k";
+    static final String ITEMS = "i";
+    static final String SHIPMENT = "s";
+    static final String TOTAL = "t";
+
+    @Value("${orders.mongo.schema:legacy}")
+    private String schema;
+
+    public boolean isCompact() {
+        return "compact".equals(schema);
+    }
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<CustomerOrder> event) {
+        if (isCompact() && event.getDocument() != null) {
+            compact(event.getDocument());
+        }
+    }
+
+    @Override
+    public void onAfterLoad(AfterLoadEvent<CustomerOrder> event) {
+        Document document = event.getDocument();
+        if (document != null && document.containsKey(VERSION)) {
+            expand(document);
+        }
+    }
+
+    // Document au format historique (tel qu'écrit par MappingMongoConverter) -> format compact, sur place
+    public static void compact(Document document) {
+        Object id = document.get("_id");
+        String customerId = document.getString("customerId");
+        Object date = document.get("date");
+        Document customer = document.get("customer", Document.class);
+        Document address = document.get("address", Document.class);
+        Document card = document.get("card", Document.class);
+        List<?> items = document.get("items", List.class);
+        Document shipment = document.get("shipment", Document.class);
+        Object total = document.get("total");
+
+        document.clear();
+        putIfNotNull(document, "_id", id);
+        document.put(VERSION, COMPACT);
+        putIfNotNull(document, "customerId", customerId);
+        putIfNotNull(document, "date", date);
+        if (customer != null) {
+            document.put(CUSTOMER, snapshot(customer, "firstName", "f", "lastName", "l", "username", "u"));
+        }
+        if (address != null) {
+            document.put(ADDRESS, snapshot(address, "number", "n", "street", "s", "city", "c",
+                    "postcode", "p", "country", "k"));
+        }
+        if (card != null) {
+            document.put(CARD, snapshot(card, "longNum", "n", "expires", "e"));
+        }
+        if (items != null) {
+            List<Document> compactItems = new ArrayList<>(items.size());
+            for (Object o : items) {
+                Document item = (Document) o;
+                Document compactItem = snapshot(item, "itemId", "i", "quantity", "q");
+                putIfNotNull(compactItem, "p", toMinor(item.get("unitPrice")));
+                compactItems.add(compactItem);
+            }
+            document.put(ITEMS, compactItems);
+        }
+        if (shipment != null) {
+            putIfNotNull(document, SHIPMENT, shipment.get("_id"));
+        }
+        putIfNotNull(document, TOTAL, toMinor(total));
+    }
+
+    // Format compact -> format historique, sur place ; les champs absents du format compact restent vides
+    public static void expand(Document document) {
+        Object id = document.get("_id");
+        String customerId = document.getString("customerId");
+        Object date = document.get("date");
+        Document customer = document.get(CUSTOMER, Document.class);
+        Document address = document.get(ADDRESS, Document.class);
+        Document card = document.get(CARD, Document.class);
+        List<?> items = document.get(ITEMS, List.class);
+        Object shipment = document.get(SHIPMENT);
+        Object total = document.get(TOTAL);
+
+        document.clear();
+        putIfNotNull(document, "_id", id);
+        putIfNotNull(document, "customerId", customerId);
+        putIfNotNull(document, "date", date);
+        if (customer != null) {
+            Document expanded = snapshot(customer, "f", "firstName", "l", "lastName", "u", "username");
+            putIfNotNull(expanded, "_id", customerId);
+            document.put("customer", expanded);
+        }
+        if (address != null) {
+            document.put("address", snapshot(address, "n", "number", "s", "street", "c", "city",
+                    "p", "postcode", "k", "country"));
+        }
+        if (card != null) {
+            document.put("card", snapshot(card, "n", "longNum", "e", "expires"));
+        }
+        if (items != null) {
+            List<Document> expandedItems = new ArrayList<>(items.size());
+            for (Object o : items) {
+                Document item = (Document) o;
+                Document expandedItem = snapshot(item, "i", "itemId", "q", "quantity");
+                putIfNotNull(expandedItem, "unitPrice", fromMinor(item.get("p")));
+                expandedItems.add(expandedItem);
+            }
+            document.put("items", expandedItems);
+        }
+        if (shipment != null) {
+            document.put("shipment", new Document("_id", shipment).append("name", customerId));
+        }
+        putIfNotNull(document, "total", fromMinor(total));
+    }
+
+    // Total et nombre d'articles pour les agrégations, quel que soit le format du document
+    public static AggregationExpression totalExpression() {
+        return context -> new Document("$ifNull", List.of(
+                new Document("$divide", List.of("$" + TOTAL, 100)), "$total"));
+    }
+
+    public static AggregationExpression itemCountExpression() {
+        return context -> new Document("$size", itemsExpression());
+    }
+
+    // Liste des articles, puis id et quantité d'un article après $unwind de cette liste sur path
+    static Document itemsExpression() {
+        return new Document("$ifNull", List.of(
+                "$" + ITEMS, new Document("$ifNull", List.of("$items", Collections.emptyList()))));
+    }
+
+    static Document itemIdExpression(String path) {
+        return new Document("$ifNull", List.of("$" + path + ".i", "$" + path + ".itemId"));
+    }
+
+    static Document quantityExpression(String path) {
+        return new Document("$ifNull", List.of("$" + path + ".q", "$" + path + ".quantity"));
+    }
+
+    // Montant en centimes : arrondi, le float stocké jusqu'ici (9.99F -> 9.989999771118164) redonne 999.
+    // En int32 (4 octets) tant qu'il tient
+    static Number toMinor(Object amount) {
+        if (!(amount instanceof Number number)) {
+            return null;
+        }
+        long minor = Math.round(number.doubleValue() * 100);
+        // Pas de ternaire : Integer et Long y seraient promus en long
+        if (minor == (int) minor) {
+            return (int) minor;
+        }
+        return minor;
+    }
+
+    static Double fromMinor(Object minor) {
+        return minor instanceof Number number ? number.longValue() / 100.0 : null;
+    }
+
+    // Copie des champs listés par paires (nom source, nom cible)
+    private static Document snapshot(Document source, String... names) {
+        Document target = new Document();
+        for (int i = 0; i < names.length; i += 2) {
+            putIfNotNull(target, names[i + 1], source.get(names[i]));
+        }
+        return target;
+    }
+
+    private static void putIfNotNull(Document document, String key, Object value) {
+        if (value != null) {
+            document.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package sockshop.orders.repositories;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import sockshop.orders.entities.CustomerOrder;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+// Crée au démarrage les index déclarés sur CustomerOrder (l'auto-création de Spring Data est désactivée),
+// puis vérifie avec explain() que les requêtes de CustomerOrderRepositoryImpl n'aboutissent pas à un COLLSCAN.
+// La vérification peut être relancée à la demande via /actuator/queryplans.
+@Component
+@Endpoint(id = "queryplans")
+public class CustomerOrderIndexes {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${orders.mongo.ensure-indexes:true}")
+    private boolean ensureIndexes;
+
+    // off : pas de vérification, warn : log, fail : le démarrage échoue
+    @Value("${orders.mongo.query-plan-check:warn}")
+    private String queryPlanCheck;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        Map<String, String> plans;
+        try {
+            if (ensureIndexes) {
+                ensureIndexes();
+            }
+            if ("off".equals(queryPlanCheck)) {
+                return;
+            }
+            plans = verifyQueryPlans();
+        } catch (RuntimeException e) {
+            if ("fail".equals(queryPlanCheck)) {
+                throw new IllegalStateException("Unable to verify CustomerOrder indexes", e);
+            }
+            LOG.warn("Unable to verify CustomerOrder indexes: {}", e.getMessage());
+            return;
+        }
+
+        List<String> collScans = plans.entrySet().stream()
+                .filter(e -> e.getValue().contains("COLLSCAN"))
+                .map(Map.Entry::getKey)
+                .toList();
+        if (collScans.isEmpty()) {
+            LOG.info("CustomerOrder query plans: {}", plans);
+            return;
+        }
+        String message = "Queries on CustomerOrder would scan the whole collection: " + collScans + " " + plans;
+        if ("fail".equals(queryPlanCheck)) {
+            throw new IllegalStateException(message);
+        }
+        LOG.warn(message);
+    }
+
+    public void ensureIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(CustomerOrder.class);
+        new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(CustomerOrder.class)
+                .forEach(index -> LOG.info("Ensured index {} on CustomerOrder", indexOps.ensureIndex(index)));
+    }
+
+    // Plan gagnant (étapes) de chaque forme de requête du repository, construite par les mêmes méthodes que
+    // CustomerOrderRepositoryImpl et traduite comme par MongoTemplate (id -> _id en ObjectId)
+    @ReadOperation
+    public Map<String, String> verifyQueryPlans() {
+        Date now = new Date();
+        String after = new ObjectId().toHexString();
+        Map<String, String> plans = new LinkedHashMap<>();
+        plans.put("findByCustomerId", winningStages(CustomerOrderRepositoryImpl.customerQuery("")));
+        plans.put("findPageAfter/streamAfter", winningStages(CustomerOrderRepositoryImpl.keysetQuery(after, 1)));
+        plans.put("findSummariesAfter(customerId)", winningStages(new Query(
+                CustomerOrderRepositoryImpl.summariesCriteria("", after)).with(Sort.by(Sort.Direction.ASC, "id"))));
+        plans.put("findBuckets", winningStages(List.of(
+                Aggregates.match(CustomerOrderRepositoryImpl.dateRange(now, now)))));
+        return plans;
+    }
+
+    private String winningStages(Query query) {
+        QueryMapper queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(CustomerOrder.class);
+        FindIterable<Document> find = collection()
+                .find(queryMapper.getMappedObject(query.getQueryObject(), entity))
+                .sort(queryMapper.getMappedSort(query.getSortObject(), entity));
+        if (query.getLimit() > 0) {
+            find.limit(query.getLimit());
+        }
+        return winningStages(find.explain());
+    }
+
+    private String winningStages(List<Bson> pipeline) {
+        return winningStages(collection().aggregate(pipeline).explain());
+    }
+
+    // Agrégation : plan de l'étape $cursor, ou plan à la racine si tout le pipeline est exécuté par le moteur de requête
+    private String winningStages(Document explain) {
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        if (queryPlanner == null && explain.get("stages") instanceof List<?> stages && !stages.isEmpty()
+                && stages.get(0) instanceof Document first && first.get("$cursor") instanceof Document cursor) {
+            queryPlanner = cursor.get("queryPlanner", Document.class);
+        }
+        if (queryPlanner == null) {
+            throw new IllegalStateException("No query plan in explain output: " + explain.toJson());
+        }
+        StringBuilder stages = new StringBuilder();
+        collectStages(queryPlanner.get("winningPlan"), stages);
+        return stages.toString();
+    }
+
+    private MongoCollection<Document> collection() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(CustomerOrder.class));
+    }
+
+    // Parcourt le plan (inputStage, inputStages, queryPlan selon la version du serveur) et liste les étapes
+    private void collectStages(Object node, StringBuilder stages) {
+        if (node instanceof Document plan) {
+            Object stage = plan.get("stage");
+            if (stage != null) {
+                if (stages.length() > 0) {
+                    stages.append(" <- ");
+                }
+                stages.append(stage);
+            }
+            collectStages(plan.get("queryPlan"), stages);
+            collectStages(plan.get("inputStage"), stages);
+            collectStages(plan.get("inputStages"), stages);
+        } else if (node instanceof List<?> children) {
+            children.forEach(child -> collectStages(child, stages));
+        }
+    }
+}
@@ -13,7 +13,7 @@ import java.util.List;
         path = "orders",                  // chemin de l'URL REST exposée
         itemResourceRel = "order"        // nom de l'élément individuel dans le HAL JSON
 )
-public interface CustomerOrderRepository extends MongoRepository<CustomerOrder, String> {
+public interface CustomerOrderRepository extends MongoRepository<CustomerOrder, String>, CustomerOrderRepositoryCustom {
 
     // http://localhost:8082/orders/search/customerId?custId=123
     @RestResource(path = "customerId", rel = "customerId")
@@ -0,0 +1,38 @@
+package sockshop.orders.repositories;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.entities.Shipment;
+import sockshop.orders.resources.OrderBucket;
+import sockshop.orders.resources.OrderSummary;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Lectures par curseur/keyset, implémentées dans CustomerOrderRepositoryImpl
+public interface CustomerOrderRepositoryCustom {
+
+    // Remplacent ceux de MongoRepository pour couvrir aussi l'archive (GET et DELETE /orders/{id})
+    Optional<CustomerOrder> findById(String id);
+
+    void deleteById(String id);
+
+    // Expédition confirmée par shipping (outbox), quel que soit le format du document
+    void updateShipment(String orderId, Shipment shipment);
+
+    // Page de commandes triées par _id, strictement après "after" (null = depuis le début)
+    List<CustomerOrder> findPageAfter(String after, int limit);
+
+    // Curseur Mongo sur les commandes triées par _id ; à fermer après usage (try-with-resources)
+    Stream<CustomerOrder> streamAfter(String after, int limit);
+
+    // Commandes d'un client, servies par CustomerOrderCache ; remplace la requête dérivée de CustomerOrderRepository
+    List<CustomerOrder> findByCustomerId(String customerId);
+
+    // Même pagination que findPageAfter, projetée côté serveur (customerId null = tous les clients)
+    List<OrderSummary> findSummariesAfter(String customerId, String after, int limit);
+
+    // Commandes, totaux et top articles par tranche (unit de $dateTrunc) sur [from, to[, agrégés sur l'index date
+    List<OrderBucket> findBuckets(Date from, Date to, String unit, int top);
+}
@@ -0,0 +1,274 @@
+package sockshop.orders.repositories;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.entities.Shipment;
+import sockshop.orders.resources.OrderBucket;
+import sockshop.orders.resources.OrderSummary;
+import sockshop.orders.services.CustomerOrderCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Avec orders.archive.enabled=true, les lectures portent sur CustomerOrder et sur CustomerOrderArchive (voir OrderArchiver) ;
+// une commande présente dans les deux (réécrite via /orders/{id} après archivage) est lue dans CustomerOrder
+public class CustomerOrderRepositoryImpl implements CustomerOrderRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CustomerOrderCache customerOrderCache;
+
+    @Autowired
+    private OrderArchive orderArchive;
+
+    @Value("${orders.stream.batch-size:200}")
+    private int batchSize;
+
+    @Value("${orders.analytics.max-time:10s}")
+    private Duration analyticsMaxTime;
+
+    @Override
+    public Optional<CustomerOrder> findById(String id) {
+        CustomerOrder order = mongoTemplate.findById(id, CustomerOrder.class);
+        if (order == null && orderArchive.isEnabled()) {
+            order = mongoTemplate.findById(id, CustomerOrder.class, OrderArchive.COLLECTION);
+        }
+        return Optional.ofNullable(order);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        Query query = Query.query(Criteria.where("id").is(id));
+        mongoTemplate.remove(query, CustomerOrder.class);
+        if (orderArchive.isEnabled()) {
+            mongoTemplate.remove(query, CustomerOrder.class, OrderArchive.COLLECTION);
+        }
+    }
+
+    @Override
+    public void updateShipment(String orderId, Shipment shipment) {
+        // Document compact : seul l'id de l'expédition est conservé
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(orderId)
+                        .and(CompactOrderSchema.VERSION).exists(true)),
+                new Update().set(CompactOrderSchema.SHIPMENT, shipment.getId()), CustomerOrder.class);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(orderId)
+                        .and(CompactOrderSchema.VERSION).exists(false)),
+                new Update().set("shipment", shipment), CustomerOrder.class);
+    }
+
+    @Override
+    public List<CustomerOrder> findByCustomerId(String customerId) {
+        return customerOrderCache.get(customerId, id -> acrossTiers(collection -> mongoTemplate.find(
+                customerQuery(id), CustomerOrder.class, collection),
+                CustomerOrder::getId, null, 0));
+    }
+
+    @Override
+    public List<CustomerOrder> findPageAfter(String after, int limit) {
+        Query query = keysetQuery(after, limit);
+        return acrossTiers(collection -> mongoTemplate.find(query, CustomerOrder.class, collection),
+                CustomerOrder::getId, Comparator.comparing(CustomerOrder::getId), limit);
+    }
+
+    // Deux curseurs fusionnés au fil de la lecture, dans l'ordre des _id
+    @Override
+    public Stream<CustomerOrder> streamAfter(String after, int limit) {
+        Query query = keysetQuery(after, limit).cursorBatchSize(batchSize);
+        Stream<CustomerOrder> active = mongoTemplate.stream(query, CustomerOrder.class);
+        if (!orderArchive.isEnabled()) {
+            return active;
+        }
+        Stream<CustomerOrder> archived;
+        try {
+            archived = mongoTemplate.stream(query, CustomerOrder.class, OrderArchive.COLLECTION);
+        } catch (RuntimeException e) {
+            active.close();
+            throw e;
+        }
+        Stream<CustomerOrder> merged = StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                        new MergedById(active.iterator(), archived.iterator()), Spliterator.ORDERED | Spliterator.NONNULL),
+                        false)
+                .onClose(active::close)
+                .onClose(archived::close);
+        return limit > 0 ? merged.limit(limit) : merged;
+    }
+
+    // Seuls _id, customerId, date, total et la taille de items sortent du serveur (documents historiques ou compacts)
+    @Override
+    public List<OrderSummary> findSummariesAfter(String customerId, String after, int limit) {
+        TypedAggregation<CustomerOrder> aggregation = Aggregation.newAggregation(CustomerOrder.class,
+                Aggregation.match(summariesCriteria(customerId, after)),
+                Aggregation.sort(Sort.Direction.ASC, "id"),
+                Aggregation.limit(limit),
+                Aggregation.project("customerId", "date")
+                        .and(CompactOrderSchema.totalExpression()).as("total")
+                        .and(CompactOrderSchema.itemCountExpression()).as("itemCount"));
+        return acrossTiers(collection -> mongoTemplate.aggregate(aggregation, collection, OrderSummary.class)
+                        .getMappedResults(),
+                OrderSummary::getId, Comparator.comparing(OrderSummary::getId), limit);
+    }
+
+    // Deux agrégations sur la plage de dates (documents historiques ou compacts) : totaux par tranche, puis quantités
+    // par tranche et article réduites aux top premiers ; voir OrderRollup pour la version sur cumuls
+    @Override
+    public List<OrderBucket> findBuckets(Date from, Date to, String unit, int top) {
+        MongoCollection<Document> orders = mongoTemplate.getCollection(mongoTemplate.getCollectionName(CustomerOrder.class));
+        Bson range = Aggregates.match(dateRange(from, to));
+        List<Bson> source = orderArchive.isEnabled()
+                ? List.of(range, Aggregates.unionWith(OrderArchive.COLLECTION, List.of(range)))
+                : List.of(range);
+        Document total = CompactOrderSchema.totalExpression().toDocument(Aggregation.DEFAULT_CONTEXT);
+        List<Document> totals = orders.aggregate(pipeline(source,
+                        Aggregates.group(OrderRollup.truncate("$date", unit),
+                                Accumulators.sum("orders", 1),
+                                Accumulators.sum("revenue", OrderRollup.cents(total))),
+                        Aggregates.sort(Sorts.ascending("_id"))))
+                .maxTime(analyticsMaxTime.toMillis(), TimeUnit.MILLISECONDS)
+                .into(new ArrayList<>());
+        List<Document> items = top == 0 ? List.of() : orders.aggregate(pipeline(source,
+                        Aggregates.project(new Document("b", OrderRollup.truncate("$date", unit))
+                                .append("items", CompactOrderSchema.itemsExpression())),
+                        Aggregates.unwind("$items"),
+                        Aggregates.group(new Document("b", "$b").append("i", CompactOrderSchema.itemIdExpression("items")),
+                                Accumulators.sum("q", CompactOrderSchema.quantityExpression("items"))),
+                        OrderRollup.topItems(top)))
+                .maxTime(analyticsMaxTime.toMillis(), TimeUnit.MILLISECONDS)
+                .allowDiskUse(true)
+                .into(new ArrayList<>());
+        return OrderRollup.buckets(totals, items);
+    }
+
+    private static List<Bson> pipeline(List<Bson> source, Bson... stages) {
+        List<Bson> pipeline = new ArrayList<>(source);
+        pipeline.addAll(List.of(stages));
+        return pipeline;
+    }
+
+    // Même requête sur chaque collection ; résultats triés selon order (null = ordre de lecture) et limités à limit (0 = tous)
+    private <T> List<T> acrossTiers(Function<String, List<T>> query, Function<T, String> idOf, Comparator<T> order,
+                                    int limit) {
+        List<T> active = query.apply(mongoTemplate.getCollectionName(CustomerOrder.class));
+        if (!orderArchive.isEnabled()) {
+            return active;
+        }
+        Map<String, T> byId = new LinkedHashMap<>();
+        active.forEach(result -> byId.put(idOf.apply(result), result));
+        query.apply(OrderArchive.COLLECTION).forEach(result -> byId.putIfAbsent(idOf.apply(result), result));
+        Stream<T> merged = byId.values().stream();
+        if (order != null) {
+            merged = merged.sorted(order);
+        }
+        if (limit > 0) {
+            merged = merged.limit(limit);
+        }
+        return merged.toList();
+    }
+
+    // Pagination par clé (_id croissant) : pas de skip, coût constant quelle que soit la page
+    // Formes de requête partagées avec CustomerOrderIndexes.verifyQueryPlans
+    static Query customerQuery(String customerId) {
+        return Query.query(Criteria.where("customerId").is(customerId));
+    }
+
+    static Criteria summariesCriteria(String customerId, String after) {
+        Criteria criteria = new Criteria();
+        if (customerId != null) {
+            criteria.and("customerId").is(customerId);
+        }
+        if (after != null && !after.isEmpty()) {
+            criteria.and("id").gt(after);
+        }
+        return criteria;
+    }
+
+    static Bson dateRange(Date from, Date to) {
+        return Filters.and(Filters.gte("date", from), Filters.lt("date", to));
+    }
+
+    static Query keysetQuery(String after, int limit) {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "id"));
+        if (after != null && !after.isEmpty()) {
+            query.addCriteria(Criteria.where("id").gt(after));
+        }
+        if (limit > 0) {
+            query.limit(limit);
+        }
+        return query;
+    }
+
+    // Fusion de deux itérateurs triés par id ; en cas de doublon, la commande active l'emporte
+    private static class MergedById implements Iterator<CustomerOrder> {
+        private final Iterator<CustomerOrder> active;
+        private final Iterator<CustomerOrder> archived;
+        private CustomerOrder nextActive;
+        private CustomerOrder nextArchived;
+
+        MergedById(Iterator<CustomerOrder> active, Iterator<CustomerOrder> archived) {
+            this.active = active;
+            this.archived = archived;
+            this.nextActive = advance(active);
+            this.nextArchived = advance(archived);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextActive != null || nextArchived != null;
+        }
+
+        @Override
+        public CustomerOrder next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int cmp = nextActive == null ? 1 : nextArchived == null ? -1
+                    : nextActive.getId().compareTo(nextArchived.getId());
+            if (cmp > 0) {
+                CustomerOrder order = nextArchived;
+                nextArchived = advance(archived);
+                return order;
+            }
+            if (cmp == 0) {
+                nextArchived = advance(archived);
+            }
+            CustomerOrder order = nextActive;
+            nextActive = advance(active);
+            return order;
+        }
+
+        private static CustomerOrder advance(Iterator<CustomerOrder> it) {
+            return it.hasNext() ? it.next() : null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package sockshop.orders.repositories;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+
+// Collection d'archive des commandes anciennes (orders.archive.enabled=true), remplie par OrderArchiver.
+// Mêmes documents que CustomerOrder (historiques ou compacts), index réduits aux lectures de CustomerOrderRepository.
+// Créée avec le compresseur de blocs WiredTiger orders.archive.compressor (zstd par défaut, none = celui du serveur) ;
+// une collection existante garde le sien.
+@Component
+public class OrderArchive {
+
+    public static final String COLLECTION = "CustomerOrderArchive";
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${orders.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${orders.archive.compressor:zstd}")
+    private String compressor;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            MongoDatabase db = mongoTemplate.getDb();
+            if (!db.listCollectionNames().into(new ArrayList<>()).contains(COLLECTION)) {
+                CreateCollectionOptions options = new CreateCollectionOptions();
+                if (!"none".equals(compressor)) {
+                    options.storageEngineOptions(new Document("wiredTiger",
+                            new Document("configString", "block_compressor=" + compressor)));
+                }
+                try {
+                    db.createCollection(COLLECTION, options);
+                    LOG.info("Created {} (block compressor: {})", COLLECTION, compressor);
+                } catch (MongoCommandException e) {
+                    // Créée entre-temps par une autre instance (NamespaceExists)
+                    if (e.getErrorCode() != 48) {
+                        throw e;
+                    }
+                }
+            }
+            db.getCollection(COLLECTION).createIndex(Indexes.compoundIndex(
+                    Indexes.ascending("customerId"), Indexes.descending("date")), new IndexOptions().name("customerId_date"));
+            db.getCollection(COLLECTION).createIndex(Indexes.descending("date"), new IndexOptions().name("date"));
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to prepare {}: {}", COLLECTION, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package sockshop.orders.repositories;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.entities.Item;
+import sockshop.orders.resources.OrderBucket;
+import sockshop.orders.resources.OrderBucket.ItemCount;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Cumuls par minute des commandes enregistrées (orders.analytics.rollup.enabled=true), pour que GET /orders/analytics
+// ne relise pas tout l'historique : OrderRollup { _id: minute, n: commandes, r: totaux en centimes } et
+// OrderItemRollup { m: minute, i: itemId, q: quantité } (index unique m + i). Incrémentés à chaque enregistrement ;
+// les modifications et suppressions faites via /orders/{id} ne sont pas reportées.
+// Le premier démarrage avec le cumul activé fixe un point de coupure commun à toutes les instances
+// (OrderRollupState, début de la minute suivante) : les commandes datées après sont incrémentées, celles d'avant
+// sont calculées une seule fois depuis CustomerOrder (et l'archive) par $merge, backfill-delay après la coupure
+// pour laisser finir les enregistrements en cours. GET /orders/analytics lit CustomerOrder tant que ce calcul
+// n'est pas terminé. Une instance démarrée avec le cumul désactivé n'incrémente rien.
+@Component
+public class OrderRollup {
+
+    static final String ROLLUP = "OrderRollup";
+    static final String ITEM_ROLLUP = "OrderItemRollup";
+    static final String STATE = "OrderRollupState";
+    static final String WATERMARK = "watermark";
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectProvider<ReactiveMongoTemplate> reactiveMongoTemplate;
+
+    @Autowired
+    private OrderArchive orderArchive;
+
+    @Value("${orders.analytics.rollup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${orders.analytics.max-time:10s}")
+    private Duration maxTime;
+
+    // Délai entre la coupure et le calcul de l'historique : au moins la durée d'enregistrement d'une commande
+    @Value("${orders.analytics.rollup.backfill-delay:1m}")
+    private Duration backfillDelay;
+
+    // Durée de réservation du calcul de l'historique par une instance, reprise par une autre au-delà
+    @Value("${orders.analytics.rollup.backfill-lease:30m}")
+    private Duration backfillLease;
+
+    // Coupure commune : null tant qu'elle n'a pas pu être lue
+    private volatile Date watermark;
+
+    private volatile boolean backfilled;
+
+    private final AtomicBoolean backfilling = new AtomicBoolean();
+
+    private ExecutorService backfillExecutor;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Cumuls complets (historique calculé) : sinon les lectures passent par CustomerOrder
+    public boolean isReady() {
+        return enabled && backfilled;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            backfillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "orders-rollup-backfill");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (backfillExecutor != null) {
+            backfillExecutor.shutdownNow();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            mongoTemplate.getCollection(ITEM_ROLLUP).createIndex(Indexes.ascending("m", "i"),
+                    new IndexOptions().name("m_i").unique(true));
+            watermark();
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to initialise the order rollup: {}", e.getMessage());
+        }
+    }
+
+    // La première instance fixe la coupure (début de la minute suivante), les autres la lisent
+    private Date watermark() {
+        Date current = watermark;
+        if (current == null) {
+            Date next = Date.from(new Date().toInstant().truncatedTo(ChronoUnit.MINUTES).plus(1, ChronoUnit.MINUTES));
+            Document state = mongoTemplate.getCollection(STATE).findOneAndUpdate(Filters.eq("_id", WATERMARK),
+                    Updates.combine(Updates.setOnInsert("at", next), Updates.setOnInsert("backfilled", false)),
+                    new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+            current = state.getDate("at");
+            backfilled = state.getBoolean("backfilled", false);
+            watermark = current;
+            LOG.info("Order rollup watermark: {} (history {})", current, backfilled ? "computed" : "pending");
+        }
+        return current;
+    }
+
+    // Le $merge sur tout l'historique peut durer : il tourne sur son propre thread pour ne pas retenir le planificateur
+    // partagé (ShipmentDispatcher, OrderArchiver, CompactOrderMigrator) ; un seul calcul à la fois par instance
+    @Scheduled(fixedDelayString = "${orders.analytics.rollup.backfill-check:30s}")
+    public void backfillWhenDue() {
+        if (!enabled || backfilled || !backfilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            backfillExecutor.execute(() -> {
+                try {
+                    backfillIfClaimed();
+                } finally {
+                    backfilling.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            backfilling.set(false);
+        }
+    }
+
+    // Calcul de l'historique par une seule instance à la fois ; une réservation expirée (instance arrêtée) est reprise
+    private void backfillIfClaimed() {
+        try {
+            Date before = watermark();
+            Date now = new Date();
+            if (now.getTime() < before.getTime() + backfillDelay.toMillis()) {
+                return;
+            }
+            MongoCollection<Document> state = mongoTemplate.getCollection(STATE);
+            Document claimed = state.findOneAndUpdate(Filters.and(Filters.eq("_id", WATERMARK),
+                            Filters.eq("backfilled", false),
+                            Filters.or(Filters.exists("claimedUntil", false), Filters.lt("claimedUntil", now))),
+                    Updates.set("claimedUntil", new Date(now.getTime() + backfillLease.toMillis())));
+            if (claimed == null) {
+                Document current = state.find(Filters.eq("_id", WATERMARK)).first();
+                backfilled = current != null && current.getBoolean("backfilled", false);
+                return;
+            }
+            backfill(before);
+            state.updateOne(Filters.eq("_id", WATERMARK),
+                    Updates.combine(Updates.set("backfilled", true), Updates.unset("claimedUntil")));
+            backfilled = true;
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to compute the order rollup history: {}", e.getMessage());
+        }
+    }
+
+    // Minutes antérieures à before, remplacées par le calcul : les cumuls n'y incrémentent jamais rien
+    private void backfill(Date before) {
+        long start = System.nanoTime();
+        MongoCollection<Document> orders = mongoTemplate.getCollection(mongoTemplate.getCollectionName(CustomerOrder.class));
+        Bson match = Aggregates.match(Filters.lt("date", before));
+        List<Bson> source = orderArchive.isEnabled()
+                ? List.of(match, Aggregates.unionWith(OrderArchive.COLLECTION, List.of(match)))
+                : List.of(match);
+        Document total = CompactOrderSchema.totalExpression().toDocument(Aggregation.DEFAULT_CONTEXT);
+        List<Bson> totals = new ArrayList<>(source);
+        totals.add(Aggregates.group(truncate("$date", "minute"),
+                Accumulators.sum("n", 1),
+                Accumulators.sum("r", cents(total))));
+        totals.add(Aggregates.merge(ROLLUP, new MergeOptions()
+                .whenMatched(MergeOptions.WhenMatched.REPLACE)));
+        orders.aggregate(totals).allowDiskUse(true).toCollection();
+        List<Bson> items = new ArrayList<>(source);
+        items.addAll(List.of(
+                Aggregates.project(new Document("m", truncate("$date", "minute"))
+                        .append("items", CompactOrderSchema.itemsExpression())),
+                Aggregates.unwind("$items"),
+                Aggregates.group(new Document("m", "$m").append("i", CompactOrderSchema.itemIdExpression("items")),
+                        Accumulators.sum("q", CompactOrderSchema.quantityExpression("items"))),
+                Aggregates.match(Filters.ne("_id.i", null)),
+                Aggregates.project(Projections.fields(Projections.excludeId(),
+                        Projections.computed("m", "$_id.m"), Projections.computed("i", "$_id.i"),
+                        Projections.include("q"))),
+                Aggregates.merge(ITEM_ROLLUP, new MergeOptions()
+                        .uniqueIdentifier(List.of("m", "i"))
+                        .whenMatched(MergeOptions.WhenMatched.REPLACE))));
+        orders.aggregate(items).allowDiskUse(true).toCollection();
+        LOG.info("Order rollup computed for orders before {} in {} ms", before,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // Après l'enregistrement : un échec laisse le cumul en retard sans faire échouer la commande
+    public void recorded(List<CustomerOrder> orders) {
+        if (!enabled || orders.isEmpty()) {
+            return;
+        }
+        Date since;
+        try {
+            since = watermark();
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to read the order rollup watermark, {} orders not counted: {}", orders.size(), e.getMessage());
+            return;
+        }
+        Increments increments = increments(orders, since);
+        if (increments == null) {
+            return;
+        }
+        try {
+            BulkWriteOptions unordered = new BulkWriteOptions().ordered(false);
+            mongoTemplate.getCollection(ROLLUP).bulkWrite(increments.totals, unordered);
+            if (!increments.items.isEmpty()) {
+                mongoTemplate.getCollection(ITEM_ROLLUP).bulkWrite(increments.items, unordered);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to update the order rollup for {} orders: {}", orders.size(), e.getMessage());
+        }
+    }
+
+    // Pipeline réactif : mêmes incréments par le driver réactif. La coupure est d'ordinaire déjà lue (onStartup) ;
+    // sinon sa première lecture, synchrone, se fait hors des threads réactifs
+    public Mono<Void> recordedReactive(List<CustomerOrder> orders) {
+        if (!enabled || orders.isEmpty()) {
+            return Mono.empty();
+        }
+        Date current = watermark;
+        Mono<Date> since = current != null
+                ? Mono.just(current)
+                : Mono.fromCallable(this::watermark).subscribeOn(Schedulers.boundedElastic());
+        ReactiveMongoTemplate template = reactiveMongoTemplate.getObject();
+        BulkWriteOptions unordered = new BulkWriteOptions().ordered(false);
+        return since
+                .onErrorResume(e -> {
+                    LOG.warn("Unable to read the order rollup watermark, {} orders not counted: {}", orders.size(),
+                            e.getMessage());
+                    return Mono.empty();
+                })
+                .flatMap(date -> Mono.justOrEmpty(increments(orders, date)))
+                .flatMap(increments -> template.getCollection(ROLLUP)
+                        .flatMap(collection -> Mono.from(collection.bulkWrite(increments.totals, unordered)))
+                        .then(increments.items.isEmpty() ? Mono.empty() : template.getCollection(ITEM_ROLLUP)
+                                .flatMap(collection -> Mono.from(collection.bulkWrite(increments.items, unordered))))
+                        .onErrorResume(e -> {
+                            LOG.warn("Unable to update the order rollup for {} orders: {}", orders.size(),
+                                    e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    // null si aucune commande n'est datée après la coupure
+    private static Increments increments(List<CustomerOrder> orders, Date since) {
+        Map<Date, long[]> totals = new LinkedHashMap<>();
+        Map<Date, Map<String, Long>> items = new LinkedHashMap<>();
+        for (CustomerOrder order : orders) {
+            // Avant la coupure : compté par le calcul de l'historique
+            if (order.getDate() == null || order.getDate().before(since)) {
+                continue;
+            }
+            Date minute = Date.from(order.getDate().toInstant().truncatedTo(ChronoUnit.MINUTES));
+            long[] total = totals.computeIfAbsent(minute, m -> new long[2]);
+            total[0]++;
+            total[1] += Math.round((double) order.getTotal() * 100);
+            if (order.getItems() != null) {
+                for (Item item : order.getItems()) {
+                    if (item.getItemId() != null) {
+                        items.computeIfAbsent(minute, m -> new HashMap<>())
+                                .merge(item.getItemId(), (long) item.getQuantity(), Long::sum);
+                    }
+                }
+            }
+        }
+
+        if (totals.isEmpty()) {
+            return null;
+        }
+        UpdateOptions upsert = new UpdateOptions().upsert(true);
+        Increments increments = new Increments();
+        totals.forEach((minute, total) -> increments.totals.add(new UpdateOneModel<>(Filters.eq("_id", minute),
+                Updates.combine(Updates.inc("n", total[0]), Updates.inc("r", total[1])), upsert)));
+        items.forEach((minute, quantities) -> quantities.forEach((itemId, quantity) -> increments.items.add(
+                new UpdateOneModel<>(Filters.and(Filters.eq("m", minute), Filters.eq("i", itemId)),
+                        Updates.inc("q", quantity), upsert))));
+        return increments;
+    }
+
+    public List<OrderBucket> findBuckets(Date from, Date to, String unit, int top) {
+        List<Document> totals = mongoTemplate.getCollection(ROLLUP).aggregate(List.of(
+                        Aggregates.match(Filters.and(Filters.gte("_id", from), Filters.lt("_id", to))),
+                        Aggregates.group(truncate("$_id", unit),
+                                Accumulators.sum("orders", "$n"),
+                                Accumulators.sum("revenue", "$r")),
+                        Aggregates.sort(Sorts.ascending("_id"))))
+                .maxTime(maxTime.toMillis(), TimeUnit.MILLISECONDS)
+                .into(new ArrayList<>());
+        List<Document> items = top == 0 ? List.of() : mongoTemplate.getCollection(ITEM_ROLLUP).aggregate(List.of(
+                        Aggregates.match(Filters.and(Filters.gte("m", from), Filters.lt("m", to))),
+                        Aggregates.group(new Document("b", truncate("$m", unit)).append("i", "$i"),
+                                Accumulators.sum("q", "$q")),
+                        topItems(top)))
+                .maxTime(maxTime.toMillis(), TimeUnit.MILLISECONDS)
+                .into(new ArrayList<>());
+        return buckets(totals, items);
+    }
+
+    // Début de la tranche (UTC) contenant la date
+    static Document truncate(String date, String unit) {
+        return new Document("$dateTrunc", new Document("date", date).append("unit", unit));
+    }
+
+    static Document cents(Object amount) {
+        return new Document("$toLong", new Document("$round", List.of(new Document("$multiply", List.of(amount, 100)), 0)));
+    }
+
+    // Entrée : { _id: { b: tranche, i: itemId }, q } ; sortie : { _id: tranche, top: [{ itemId, quantity }] }
+    static Bson topItems(int top) {
+        return new Document("$group", new Document("_id", "$_id.b")
+                .append("top", new Document("$topN", new Document("n", top)
+                        .append("sortBy", new Document("q", -1).append("_id.i", 1))
+                        .append("output", new Document("itemId", "$_id.i").append("quantity", "$q")))));
+    }
+
+    // totals : { _id: tranche, orders, revenue (centimes) } triés ; items : sortie de topItems
+    static List<OrderBucket> buckets(List<Document> totals, List<Document> items) {
+        Map<Date, OrderBucket> buckets = new LinkedHashMap<>();
+        for (Document total : totals) {
+            Date start = total.getDate("_id");
+            buckets.put(start, new OrderBucket(start, total.get("orders", Number.class).longValue(),
+                    total.get("revenue", Number.class).longValue() / 100.0));
+        }
+        for (Document item : items) {
+            OrderBucket bucket = buckets.get(item.getDate("_id"));
+            if (bucket != null) {
+                for (Document top : item.getList("top", Document.class)) {
+                    bucket.getTopItems().add(new ItemCount(top.getString("itemId"),
+                            top.get("quantity", Number.class).longValue()));
+                }
+            }
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    private static class Increments {
+        private final List<UpdateOneModel<Document>> totals = new ArrayList<>();
+        private final List<UpdateOneModel<Document>> items = new ArrayList<>();
+    }
+}
@@ -0,0 +1,67 @@
+package sockshop.orders.resources;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import sockshop.orders.entities.CustomerOrder;
+
+// Résultat d'une entrée de POST /orders/batch, dans l'ordre de la requête.
+// status reprend le code HTTP qu'aurait renvoyé POST /orders pour cette commande.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchOrderResult {
+    private int index;
+    private int status;
+    private String message;
+    private CustomerOrder order;
+
+    // For jackson
+    public BatchOrderResult() {
+    }
+
+    public BatchOrderResult(int index, int status, String message, CustomerOrder order) {
+        this.index = index;
+        this.status = status;
+        this.message = message;
+        this.order = order;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchOrderResult{" +
+                "index=" + index +
+                ", status=" + status +
+                ", message=" + message +
+                ", order=" + order +
+                '}';
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public CustomerOrder getOrder() {
+        return order;
+    }
+
+    public void setOrder(CustomerOrder order) {
+        this.order = order;
+    }
+}
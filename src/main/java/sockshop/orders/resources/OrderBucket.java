@@ -0,0 +1,104 @@
+package sockshop.orders.resources;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// Une tranche de temps de GET /orders/analytics : nombre de commandes, somme des totaux
+// et articles les plus commandés (en quantité) sur [start, start + granularité[
+public class OrderBucket {
+    private Date start;
+    private long orders;
+    private double revenue;
+    private List<ItemCount> topItems = new ArrayList<>();
+
+    // For jackson
+    public OrderBucket() {
+    }
+
+    public OrderBucket(Date start, long orders, double revenue) {
+        this.start = start;
+        this.orders = orders;
+        this.revenue = revenue;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderBucket{" +
+                "start=" + start +
+                ", orders=" + orders +
+                ", revenue=" + revenue +
+                ", topItems=" + topItems +
+                '}';
+    }
+
+    public Date getStart() {
+        return start;
+    }
+
+    public void setStart(Date start) {
+        this.start = start;
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+
+    public void setOrders(long orders) {
+        this.orders = orders;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+
+    public List<ItemCount> getTopItems() {
+        return topItems;
+    }
+
+    public void setTopItems(List<ItemCount> topItems) {
+        this.topItems = topItems;
+    }
+
+    public static class ItemCount {
+        private String itemId;
+        private long quantity;
+
+        // For jackson
+        public ItemCount() {
+        }
+
+        public ItemCount(String itemId, long quantity) {
+            this.itemId = itemId;
+            this.quantity = quantity;
+        }
+
+        @Override
+        public String toString() {
+            return "ItemCount{" +
+                    "itemId=" + itemId +
+                    ", quantity=" + quantity +
+                    '}';
+        }
+
+        public String getItemId() {
+            return itemId;
+        }
+
+        public void setItemId(String itemId) {
+            this.itemId = itemId;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(long quantity) {
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package sockshop.orders.resources;
+
+import java.util.Date;
+
+// Vue réduite d'une commande pour GET /orders/summaries : lue par projection Mongo,
+// sans customer, address, card ni articles.
+public class OrderSummary {
+    private String id;
+    private String customerId;
+    private Date date;
+    private float total;
+    private int itemCount;
+
+    // For jackson
+    public OrderSummary() {
+    }
+
+    public OrderSummary(String id, String customerId, Date date, float total, int itemCount) {
+        this.id = id;
+        this.customerId = customerId;
+        this.date = date;
+        this.total = total;
+        this.itemCount = itemCount;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderSummary{" +
+                "id=" + id +
+                ", customerId=" + customerId +
+                ", date=" + date +
+                ", total=" + total +
+                ", itemCount=" + itemCount +
+                '}';
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public void setDate(Date date) {
+        this.date = date;
+    }
+
+    public float getTotal() {
+        return total;
+    }
+
+    public void setTotal(float total) {
+        this.total = total;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(int itemCount) {
+        this.itemCount = itemCount;
+    }
+}
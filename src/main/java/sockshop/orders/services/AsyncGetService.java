@@ -2,29 +2,39 @@ package sockshop.orders.services;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.MediaTypes;
 import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import sockshop.orders.config.AsyncConfiguration;
 import sockshop.orders.config.RestProxyTemplate;
+import sockshop.orders.services.ResourceCache.CachedResource;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.concurrent.Future;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static org.springframework.hateoas.MediaTypes.HAL_JSON;
 
@@ -36,57 +46,144 @@ public class AsyncGetService {
 
     private final RestTemplate halTemplate;
 
+    // Timers pré-enregistrés par dépendance et par issue, pour éviter un lookup du registre à chaque appel
+    private final Map<Upstream, Timer> successTimers = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Timer> errorTimers = new EnumMap<>(Upstream.class);
+
+    private final ResourceCache resourceCache;
+
+    private final Executor upstreamExecutor;
+
+    private final UpstreamResilience upstreamResilience;
+
+    private final RequestHedging requestHedging;
+
     @Autowired
-    public AsyncGetService(RestProxyTemplate restProxyTemplate) {
+    public AsyncGetService(RestProxyTemplate restProxyTemplate, MeterRegistry meterRegistry, ResourceCache resourceCache,
+                           @Qualifier(AsyncConfiguration.UPSTREAM_EXECUTOR) Executor upstreamExecutor,
+                           UpstreamResilience upstreamResilience, RequestHedging requestHedging) {
         this.restProxyTemplate = restProxyTemplate;
-        this.halTemplate = new RestTemplate(restProxyTemplate.getRestTemplate().getRequestFactory());
+        this.resourceCache = resourceCache;
+        this.upstreamResilience = upstreamResilience;
+        this.requestHedging = requestHedging;
+        this.upstreamExecutor = upstreamExecutor;
+        // Même client HTTP (pool de connexions) que RestProxyTemplate, avec des requêtes annulables par le hedging
+        // et des timeouts bornés par l'échéance de la requête
+        this.halTemplate = new RestTemplate(new UpstreamRequestFactory(restProxyTemplate.getHttpClient()));
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        objectMapper.registerModule(new Jackson2HalModule());
         MappingJackson2HttpMessageConverter halConverter = new MappingJackson2HttpMessageConverter();
         halConverter.setSupportedMediaTypes(Arrays.asList(MediaTypes.HAL_JSON, MediaType.APPLICATION_JSON));
-        halConverter.setObjectMapper(objectMapper);
+        halConverter.setObjectMapper(halObjectMapper());
         halTemplate.setMessageConverters(Collections.singletonList(halConverter));
+
+        for (Upstream upstream : Upstream.values()) {
+            successTimers.put(upstream, upstreamTimer(meterRegistry, upstream, "success"));
+            errorTimers.put(upstream, upstreamTimer(meterRegistry, upstream, "error"));
+        }
+    }
+
+    // Mapper HAL partagé avec ReactiveGetService
+    static ObjectMapper halObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.registerModule(new Jackson2HalModule());
+        return objectMapper;
     }
 
-    @Async
-    public <T> Future<EntityModel<T>> getResource(URI url, ParameterizedTypeReference<EntityModel<T>> type)
+    // Pas d'@Async ici : une ressource en cache est rendue sans passer par le pool, et les appels
+    // concurrents pour une même URI partagent le même futur. Les GET passent par RequestHedging.
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<EntityModel<T>> getResource(Upstream upstream, URI url,
+                                                             ParameterizedTypeReference<EntityModel<T>> type)
             throws InterruptedException, IOException {
-        RequestEntity<Void> request = RequestEntity.get(url).accept(HAL_JSON).build();
-        LOG.debug("Requesting: " + request.toString());
-        EntityModel<T> body = halTemplate.exchange(request, type).getBody();
-        LOG.debug("Received: " + body.toString());
-        return new AsyncResult<>(body);
+        if (!upstream.isCacheable() || !resourceCache.isEnabled()) {
+            return requestHedging.supplyAsync(upstream,
+                    () -> (EntityModel<T>) fetchResource(upstream, url, type, null).getBody(), upstreamExecutor);
+        }
+        // Chargement partagé par toutes les requêtes qui attendent cette URI : lancé sans l'échéance de la première
+        // (qui n'en attend le résultat que jusqu'à sa propre échéance), borné par les timeouts du client HTTP
+        return resourceCache.get(url, stale -> {
+                    try (Deadline.Scope shared = Deadline.suspend()) {
+                        return requestHedging.supplyAsync(upstream,
+                                () -> fetchResource(upstream, url, type, stale), upstreamExecutor);
+                    }
+                })
+                .thenApply(resource -> (EntityModel<T>) resource.getBody());
+    }
+
+    private <T> CachedResource fetchResource(Upstream upstream, URI url, ParameterizedTypeReference<EntityModel<T>> type,
+                                             CachedResource stale) {
+        RequestEntity.HeadersBuilder<?> builder = RequestEntity.get(url).accept(HAL_JSON);
+        if (stale != null) {
+            builder.ifNoneMatch(stale.getEtag());
+        }
+        RequestEntity<Void> request = builder.build();
+        LOG.debug("Requesting: {}", request);
+        ResponseEntity<EntityModel<T>> response = exchange(upstream, request, type);
+        if (stale != null && response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+            LOG.debug("Not modified: {}", url);
+            return stale.revalidated();
+        }
+        LOG.debug("Received: {}", response.getBody());
+        return new CachedResource(response.getBody(), response.getHeaders().getETag());
     }
 
-    @Async
-    public <T, R> Future<R> getDataList(URI url, ParameterizedTypeReference<R> type)
+    public <T, R> CompletableFuture<R> getDataList(Upstream upstream, URI url, ParameterizedTypeReference<R> type)
             throws InterruptedException, IOException {
         RequestEntity<Void> request = RequestEntity.get(url)
                 .accept(type.getType().equals(CollectionModel.class) ? HAL_JSON : MediaType.APPLICATION_JSON)
                 .build();
-        LOG.debug("Requesting: " + request.toString());
-        R body = halTemplate.exchange(request, type).getBody();
-        LOG.debug("Received: " + body.toString());
-        return new AsyncResult<>(body);
+        LOG.debug("Requesting: {}", request);
+        return requestHedging.supplyAsync(upstream, () -> {
+            R body = exchange(upstream, request, type).getBody();
+            LOG.debug("Received: {}", body);
+            return body;
+        }, upstreamExecutor);
     }
 
-    @Async
-    public <T, B> Future<T> postResource(URI uri, B body, ParameterizedTypeReference<T> returnType)
+    @Async(AsyncConfiguration.UPSTREAM_EXECUTOR)
+    public <T, B> CompletableFuture<T> postResource(Upstream upstream, URI uri, B body,
+                                                    ParameterizedTypeReference<T> returnType)
             throws InterruptedException, IOException {
         RequestEntity<B> request = RequestEntity.post(uri)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(HAL_JSON, MediaType.APPLICATION_JSON)
                 .body(body);
-        LOG.debug("Requesting: " + request.toString());
+        LOG.debug("Requesting: {}", request);
         try {
-            T responseBody = halTemplate.exchange(request, returnType).getBody();
-            LOG.debug("Received: " + responseBody);
-            return new AsyncResult<>(responseBody);
+            T responseBody = exchange(upstream, request, returnType).getBody();
+            LOG.debug("Received: {}", responseBody);
+            return CompletableFuture.completedFuture(responseBody);
         } catch (HttpClientErrorException e) {
             LOG.error("HTTP error while posting to {}: {} - {}", uri, e.getStatusCode(), e.getResponseBodyAsString());
             throw new IOException("Failed to post resource to " + uri + ": " + e.getStatusCode() + " - " + e.getResponseBodyAsString(), e);
         }
     }
+
+    // Tous les appels sortants passent par le bulkhead et le circuit breaker du service ;
+    // un appel refusé lève UpstreamUnavailableException et n'entre pas dans les timers.
+    // Échéance déjà dépassée : l'appel n'est pas envoyé (et ne compte pas contre le service)
+    private <T> ResponseEntity<T> exchange(Upstream upstream, RequestEntity<?> request, ParameterizedTypeReference<T> type) {
+        Deadline.checkCurrent("calling " + upstream.getTag());
+        return upstreamResilience.call(upstream, () -> {
+            long start = System.nanoTime();
+            try {
+                ResponseEntity<T> response = halTemplate.exchange(request, type);
+                successTimers.get(upstream).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return response;
+            } catch (RuntimeException e) {
+                if (!RequestHedging.isCurrentAttemptCancelled()) {
+                    errorTimers.get(upstream).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                throw e;
+            }
+        });
+    }
+
+    private static Timer upstreamTimer(MeterRegistry meterRegistry, Upstream upstream, String outcome) {
+        return Timer.builder("orders_upstream_requests")
+                .description("Latency of calls to upstream services")
+                .tags("dependency", upstream.getTag(), "outcome", outcome)
+                .register(meterRegistry);
+    }
 }
\ No newline at end of file
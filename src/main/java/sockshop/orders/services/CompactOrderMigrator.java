@@ -0,0 +1,103 @@
+package sockshop.orders.services;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.Sorts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.repositories.CompactOrderSchema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Réécrit en arrière-plan les commandes encore au format historique quand orders.mongo.schema=compact.
+// Parcours par _id croissant, batch-size documents par passage ; chaque remplacement ne porte que sur un document
+// resté historique, une écriture concurrente (déjà compacte) ou une autre instance qui migre en même temps ne sont
+// donc pas écrasées. Un dernier passage depuis le début reprend les documents écrits derrière le curseur
+// (instances pas encore passées au format compact) ; la migration s'arrête quand il ne trouve plus rien.
+@Component
+public class CompactOrderMigrator {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CompactOrderSchema compactOrderSchema;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${orders.mongo.compact-migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orders.mongo.compact-migration.batch-size:500}")
+    private int batchSize;
+
+    private Counter migrated;
+
+    // Dernier _id traité du passage en cours (null = début de la collection)
+    private Object lastId;
+
+    private boolean done;
+
+    @PostConstruct
+    public void init() {
+        migrated = Counter.builder("orders_schema_migrated_documents")
+                .description("CustomerOrder documents rewritten to the compact schema")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${orders.mongo.compact-migration.interval:1s}")
+    public void migrate() {
+        if (!enabled || done || !compactOrderSchema.isCompact()) {
+            return;
+        }
+        try {
+            MongoCollection<Document> collection = mongoTemplate.getCollection(
+                    mongoTemplate.getCollectionName(CustomerOrder.class));
+            Bson legacy = Filters.exists(CompactOrderSchema.VERSION, false);
+            List<Document> batch = collection
+                    .find(lastId == null ? legacy : Filters.and(legacy, Filters.gt("_id", lastId)))
+                    .sort(Sorts.ascending("_id"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+            if (batch.isEmpty()) {
+                if (lastId == null) {
+                    done = true;
+                    LOG.info("CustomerOrder compact schema migration complete ({} documents)", (long) migrated.count());
+                }
+                lastId = null;
+                return;
+            }
+
+            List<ReplaceOneModel<Document>> replacements = new ArrayList<>(batch.size());
+            for (Document document : batch) {
+                Object id = document.get("_id");
+                CompactOrderSchema.compact(document);
+                replacements.add(new ReplaceOneModel<>(Filters.and(Filters.eq("_id", id), legacy), document));
+                lastId = id;
+            }
+            int modified = collection.bulkWrite(replacements, new BulkWriteOptions().ordered(false)).getModifiedCount();
+            migrated.increment(modified);
+            LOG.debug("Migrated {} CustomerOrder documents to the compact schema", modified);
+        } catch (RuntimeException e) {
+            LOG.warn("CustomerOrder compact schema migration failed: {}", e.getMessage());
+        }
+    }
+}
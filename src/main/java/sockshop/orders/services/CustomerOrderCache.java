@@ -0,0 +1,141 @@
+package sockshop.orders.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.rest.core.annotation.HandleAfterCreate;
+import org.springframework.data.rest.core.annotation.HandleAfterDelete;
+import org.springframework.data.rest.core.annotation.HandleAfterSave;
+import org.springframework.data.rest.core.annotation.RepositoryEventHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import sockshop.orders.entities.CustomerOrder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+// Historique des commandes par client (GET /orders/search/customerId, appelé par le front après chaque commande).
+// Borné en mémoire estimée (W-TinyLFU de Caffeine). Les commandes créées par cette instance sont ajoutées à la
+// liste en cache (write-through) et les autres instances invalident la leur ; une écriture par Spring Data REST
+// (PUT, PATCH, DELETE /orders/{id}) invalide l'entrée.
+@Component
+@RepositoryEventHandler
+public class CustomerOrderCache {
+
+    // Estimation de l'empreinte mémoire d'une commande désérialisée (client, adresse, carte, expédition) et d'un article
+    private static final int ORDER_BYTES = 2048;
+    private static final int ITEM_BYTES = 256;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private OrderCacheInvalidation invalidation;
+
+    @Value("${orders.customer-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orders.customer-cache.max-memory:64MB}")
+    private DataSize maxMemory;
+
+    @Value("${orders.customer-cache.ttl:10m}")
+    private Duration ttl;
+
+    private Cache<String, List<CustomerOrder>> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((String customerId, List<CustomerOrder> orders) -> estimatedBytes(orders))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "customer_orders");
+        Gauge.builder("orders_customer_cache_hit_ratio", cache, c -> c.stats().hitRate())
+                .description("Hit ratio of the per-customer order history cache since startup")
+                .register(meterRegistry);
+        Gauge.builder("orders_customer_cache_memory", cache,
+                        c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Estimated memory held by the per-customer order history cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        invalidation.subscribe(cache::invalidate);
+    }
+
+    public List<CustomerOrder> get(String customerId, Function<String, List<CustomerOrder>> loader) {
+        if (!enabled || customerId == null) {
+            return loader.apply(customerId);
+        }
+        return cache.get(customerId, id -> List.copyOf(loader.apply(id)));
+    }
+
+    // Après l'enregistrement (transaction validée) de nouvelles commandes
+    public void saved(List<CustomerOrder> orders) {
+        if (!enabled) {
+            return;
+        }
+        for (CustomerOrder order : orders) {
+            // Si un chargement est en cours pour ce client, computeIfPresent attend sa fin
+            cache.asMap().computeIfPresent(order.getCustomerId(), (id, cached) -> withOrder(cached, order));
+        }
+        orders.stream().map(CustomerOrder::getCustomerId).distinct().forEach(invalidation::publish);
+    }
+
+    // Commande du client modifiée hors Spring Data REST (expédition confirmée par ShipmentDispatcher)
+    public void changed(String customerId) {
+        if (!enabled || customerId == null) {
+            return;
+        }
+        cache.invalidate(customerId);
+        invalidation.publish(customerId);
+    }
+
+    @HandleAfterCreate
+    @HandleAfterSave
+    @HandleAfterDelete
+    public void restWrite(CustomerOrder order) {
+        if (!enabled) {
+            return;
+        }
+        // Un PATCH a pu changer customerId : la commande est aussi retirée de la liste de l'ancien client
+        cache.invalidate(order.getCustomerId());
+        cache.asMap().values().removeIf(orders -> orders.stream().anyMatch(o -> Objects.equals(o.getId(), order.getId())));
+        invalidation.publish(order.getCustomerId());
+    }
+
+    // La commande remplace celle de même id si le chargement l'a déjà lue
+    private static List<CustomerOrder> withOrder(List<CustomerOrder> cached, CustomerOrder order) {
+        List<CustomerOrder> orders = new ArrayList<>(cached.size() + 1);
+        boolean replaced = false;
+        for (CustomerOrder o : cached) {
+            if (Objects.equals(o.getId(), order.getId())) {
+                orders.add(order);
+                replaced = true;
+            } else {
+                orders.add(o);
+            }
+        }
+        if (!replaced) {
+            orders.add(order);
+        }
+        return List.copyOf(orders);
+    }
+
+    private static int estimatedBytes(List<CustomerOrder> orders) {
+        long bytes = 0;
+        for (CustomerOrder order : orders) {
+            bytes += ORDER_BYTES + (long) ITEM_BYTES * (order.getItems() == null ? 0 : order.getItems().size());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+}
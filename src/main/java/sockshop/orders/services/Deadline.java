@@ -0,0 +1,135 @@
+package sockshop.orders.services;
+
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+
+// Échéance d'une requête POST /orders, fixée à l'entrée : chaque appel en aval (HTTP, Mongo, attente d'un futur)
+// ne reçoit que le temps restant, au lieu d'un timeout complet chacun. Portée par le thread courant et recopiée
+// sur les threads du pool amont par wrap (TaskDecorator de AsyncConfiguration).
+// Une échéance raccourcie par le client (X-Request-Timeout) qui expire ne dit rien de l'état du service ni de ses
+// dépendances : elle n'est comptée ni par les circuit breakers ni par la limite de concurrence.
+public final class Deadline {
+
+    // Attribut de la requête HTTP portant son échéance, lu par ConcurrencyLimitInterceptor
+    public static final String REQUEST_ATTRIBUTE = Deadline.class.getName();
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAt;
+    private final boolean requestedByClient;
+
+    private Deadline(long expiresAt, boolean requestedByClient) {
+        this.expiresAt = expiresAt;
+        this.requestedByClient = requestedByClient;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos(), false);
+    }
+
+    // Budget du service, raccourci si le client en demande un plus court (au moins min)
+    public static Deadline after(Duration budget, Long requestedMillis, Duration min) {
+        if (requestedMillis == null || requestedMillis <= 0 || requestedMillis >= budget.toMillis()) {
+            return after(budget);
+        }
+        Duration requested = Duration.ofMillis(Math.max(requestedMillis, Math.min(min.toMillis(), budget.toMillis())));
+        return new Deadline(System.nanoTime() + requested.toNanos(), true);
+    }
+
+    // Échéance du thread courant, null hors d'une requête de commande
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    // Temps restant de l'échéance courante, plafonné à max (max s'il n'y en a pas)
+    public static long remainingNanos(long max) {
+        Deadline deadline = CURRENT.get();
+        return deadline == null ? max : Math.min(max, deadline.remainingNanos());
+    }
+
+    // Vrai si l'échéance courante, demandée par le client, est dépassée : un échec amont à ce moment vient
+    // vraisemblablement des timeouts qu'elle a raccourcis
+    public static boolean isCurrentRequestedByClientAndExpired() {
+        Deadline deadline = CURRENT.get();
+        return deadline != null && deadline.requestedByClient && deadline.isExpired();
+    }
+
+    public static void checkCurrent(String what) {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null) {
+            deadline.check(what);
+        }
+    }
+
+    // maxTimeMS de la requête Mongo = temps restant (au moins 1 ms : 0 voudrait dire sans limite)
+    public static Query maxTime(Query query) {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null) {
+            query.maxTimeMsec(Math.max(1, deadline.remainingNanos() / 1_000_000));
+        }
+        return query;
+    }
+
+    // Exécute task avec l'échéance du thread qui l'a soumise
+    public static Runnable wrap(Runnable task) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return task;
+        }
+        return () -> {
+            try (Scope scope = deadline.bind()) {
+                task.run();
+            }
+        };
+    }
+
+    public Scope bind() {
+        return bind(this);
+    }
+
+    // Travail qui ne doit plus dépendre de l'échéance de la requête : chargement partagé entre requêtes,
+    // enregistrement d'une commande déjà payée. Il reste borné par ses propres timeouts.
+    public static Scope suspend() {
+        return bind(null);
+    }
+
+    private static Scope bind(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public boolean isRequestedByClient() {
+        return requestedByClient;
+    }
+
+    public long remainingNanos() {
+        return Math.max(0, expiresAt - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return expiresAt - System.nanoTime() <= 0;
+    }
+
+    public void check(String what) {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Request deadline exceeded before " + what);
+        }
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
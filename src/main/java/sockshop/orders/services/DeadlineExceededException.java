@@ -0,0 +1,8 @@
+package sockshop.orders.services;
+
+// Travail abandonné sans être lancé : l'échéance de la requête est déjà dépassée
+public class DeadlineExceededException extends IllegalStateException {
+    public DeadlineExceededException(String s) {
+        super(s);
+    }
+}
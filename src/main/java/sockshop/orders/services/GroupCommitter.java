@@ -0,0 +1,125 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Regroupe les écritures de requêtes concurrentes (group commit) : le premier élément ouvre une fenêtre de window,
+// ceux qui arrivent entre-temps (au plus maxBatchSize) partent dans la même écriture. Une seule écriture à la fois :
+// pendant qu'un lot s'écrit, le suivant se remplit. Si l'écriture groupée échoue, chaque élément est réécrit seul
+// pour que l'échec d'une requête ne fasse pas échouer les autres.
+public class GroupCommitter<T> {
+
+    private final BlockingQueue<Pending<T>> queue;
+    private final Function<List<T>, List<T>> batchWriter;
+    private final Function<T, T> singleWriter;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final DistributionSummary batchSizes;
+    private final Timer commits;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    public GroupCommitter(String name, Function<List<T>, List<T>> batchWriter, Function<T, T> singleWriter,
+                          Duration window, int maxBatchSize, int queueCapacity,
+                          DistributionSummary batchSizes, Timer commits) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchWriter = batchWriter;
+        this.singleWriter = singleWriter;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.batchSizes = batchSizes;
+        this.commits = commits;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Le futur est complété avec l'élément tel que renvoyé par l'écriture (id renseigné)
+    public CompletableFuture<T> submit(T item) {
+        Pending<T> pending = new Pending<>(item);
+        if (!running || !queue.offer(pending)) {
+            pending.future.completeExceptionally(new IllegalStateException("Group commit queue is full or stopped"));
+        }
+        return pending.future;
+    }
+
+    public void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private void run() {
+        List<Pending<T>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running) {
+                Pending<T> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long end = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = end - System.nanoTime();
+                    Pending<T> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Arrêt : ce qui reste n'est pas écrit
+        batch.addAll(queue);
+        batch.forEach(pending -> pending.future.completeExceptionally(
+                new IllegalStateException("Group commit stopped before the order was saved")));
+    }
+
+    private void commit(List<Pending<T>> batch) {
+        List<T> items = new ArrayList<>(batch.size());
+        batch.forEach(pending -> items.add(pending.item));
+        long start = System.nanoTime();
+        try {
+            List<T> saved = batchWriter.apply(items);
+            commits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSizes.record(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(saved.get(i));
+            }
+        } catch (RuntimeException e) {
+            for (Pending<T> pending : batch) {
+                long singleStart = System.nanoTime();
+                try {
+                    T saved = singleWriter.apply(pending.item);
+                    commits.record(System.nanoTime() - singleStart, TimeUnit.NANOSECONDS);
+                    batchSizes.record(1);
+                    pending.future.complete(saved);
+                } catch (RuntimeException singleFailure) {
+                    pending.future.completeExceptionally(singleFailure);
+                }
+            }
+        }
+    }
+
+    private static class Pending<T> {
+        private final T item;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Pending(T item) {
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+final class IdempotencyMetrics {
+
+    private IdempotencyMetrics() {
+    }
+
+    static Counter counter(MeterRegistry meterRegistry, String store, String result) {
+        return Counter.builder("orders_idempotency_requests")
+                .description("POST /orders requests carrying an Idempotency-Key")
+                .tags("store", store, "result", result)
+                .register(meterRegistry);
+    }
+
+    // Le premier essai n'a pas abouti dans le délai : le client réessaiera plus tard avec la même clé
+    static ResponseStatusException stillInProgress() {
+        return new ResponseStatusException(HttpStatus.CONFLICT,
+                "An order with the same Idempotency-Key is still being processed.");
+    }
+
+    // Même clé, autre commande : erreur du client, on ne rejoue pas la commande d'un autre contenu
+    static ResponseStatusException keyReused() {
+        return new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                "Idempotency-Key was already used with a different order request.");
+    }
+}
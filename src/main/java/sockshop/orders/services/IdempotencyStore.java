@@ -0,0 +1,39 @@
+package sockshop.orders.services;
+
+import reactor.core.publisher.Mono;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.resources.NewOrderResource;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+// Déduplication de POST /orders par en-tête Idempotency-Key : la première requête exécute action,
+// les suivantes (même clé) reçoivent la commande créée, en attendant la fin du premier essai si besoin.
+// La clé est liée à l'empreinte de la requête : la même clé avec un autre contenu est refusée (422).
+public interface IdempotencyStore {
+
+    CustomerOrder execute(String key, String fingerprint, Supplier<CustomerOrder> action);
+
+    // Pipeline réactif : même contrat sans bloquer de thread. L'attente d'un premier essai est bornée par
+    // l'échéance courante au moment de l'appel
+    Mono<CustomerOrder> executeReactive(String key, String fingerprint, Supplier<Mono<CustomerOrder>> action);
+
+    // SHA-256 des URI de la commande (client compris) ; simulate n'en fait pas partie
+    static String fingerprint(NewOrderResource item) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (URI uri : new URI[]{item.customer, item.address, item.card, item.items}) {
+                digest.update(String.valueOf(uri).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package sockshop.orders.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import sockshop.orders.entities.CustomerOrder;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Clés gardées en mémoire (une seule instance) : le premier essai publie son résultat dans un CompletableFuture
+// que les doublons attendent, s'ils portent la même empreinte. Un essai en échec libère la clé.
+@Component
+@ConditionalOnProperty(name = "orders.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${orders.idempotency.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${orders.idempotency.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${orders.idempotency.wait-timeout:10s}")
+    private Duration waitTimeout;
+
+    private ConcurrentMap<String, Attempt> attempts;
+
+    private Counter executed;
+    private Counter replayed;
+
+    @PostConstruct
+    public void init() {
+        Cache<String, Attempt> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+        attempts = cache.asMap();
+        executed = IdempotencyMetrics.counter(meterRegistry, "memory", "executed");
+        replayed = IdempotencyMetrics.counter(meterRegistry, "memory", "replayed");
+    }
+
+    @Override
+    public CustomerOrder execute(String key, String fingerprint, Supplier<CustomerOrder> action) {
+        // L'attente d'un premier essai ne dépasse pas l'échéance de la requête
+        long deadline = System.nanoTime() + Deadline.remainingNanos(waitTimeout.toNanos());
+        while (true) {
+            Attempt attempt = new Attempt(fingerprint);
+            Attempt first = attempts.putIfAbsent(key, attempt);
+            if (first == null) {
+                executed.increment();
+                return run(key, attempt, action);
+            }
+            if (!first.fingerprint.equals(fingerprint)) {
+                throw IdempotencyMetrics.keyReused();
+            }
+            CustomerOrder order = await(first.order, deadline);
+            if (order != null) {
+                replayed.increment();
+                return order;
+            }
+            // Le premier essai a échoué et a libéré la clé : on retente
+        }
+    }
+
+    @Override
+    public Mono<CustomerOrder> executeReactive(String key, String fingerprint, Supplier<Mono<CustomerOrder>> action) {
+        long deadline = System.nanoTime() + Deadline.remainingNanos(waitTimeout.toNanos());
+        return attemptReactive(key, fingerprint, action, deadline);
+    }
+
+    private Mono<CustomerOrder> attemptReactive(String key, String fingerprint, Supplier<Mono<CustomerOrder>> action,
+                                                long deadline) {
+        return Mono.defer(() -> {
+            Attempt attempt = new Attempt(fingerprint);
+            Attempt first = attempts.putIfAbsent(key, attempt);
+            if (first == null) {
+                executed.increment();
+                return action.get()
+                        .doOnNext(attempt.order::complete)
+                        .doOnError(e -> failed(key, attempt, e))
+                        // Requête abandonnée avant l'issue : la clé est libérée comme après un échec
+                        .doOnCancel(() -> failed(key, attempt, new CancellationException("Order request cancelled")));
+            }
+            if (!first.fingerprint.equals(fingerprint)) {
+                return Mono.error(IdempotencyMetrics.keyReused());
+            }
+            return Mono.fromFuture(first.order, true)
+                    .timeout(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())))
+                    .doOnNext(order -> replayed.increment())
+                    .onErrorResume(e -> first.order.isCompletedExceptionally()
+                            // Le premier essai a échoué et a libéré la clé : on retente
+                            ? attemptReactive(key, fingerprint, action, deadline)
+                            : Mono.error(e instanceof TimeoutException ? IdempotencyMetrics.stillInProgress() : e));
+        });
+    }
+
+    private CustomerOrder run(String key, Attempt attempt, Supplier<CustomerOrder> action) {
+        try {
+            CustomerOrder order = action.get();
+            attempt.order.complete(order);
+            return order;
+        } catch (RuntimeException e) {
+            failed(key, attempt, e);
+            throw e;
+        }
+    }
+
+    private void failed(String key, Attempt attempt, Throwable e) {
+        if (e instanceof OrderSaveInProgressException saving) {
+            // La commande peut encore être enregistrée : la clé reste prise jusqu'à l'issue de l'écriture
+            saving.getSaved().whenComplete((order, failure) -> {
+                if (failure == null) {
+                    attempt.order.complete(order);
+                } else {
+                    attempts.remove(key, attempt);
+                    attempt.order.completeExceptionally(failure);
+                }
+            });
+        } else if (!attempt.order.isDone()) {
+            attempts.remove(key, attempt);
+            attempt.order.completeExceptionally(e);
+        }
+    }
+
+    private CustomerOrder await(CompletableFuture<CustomerOrder> first, long deadline) {
+        try {
+            return first.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            throw IdempotencyMetrics.stillInProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a previous attempt of the same order.", e);
+        }
+    }
+
+    private static class Attempt {
+        private final String fingerprint;
+        private final CompletableFuture<CustomerOrder> order = new CompletableFuture<>();
+
+        Attempt(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package sockshop.orders.services;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+// Une seule instance : toutes les écritures passent par elle et mettent déjà son cache à jour, il n'y a personne
+// à prévenir. Avec plusieurs instances sur ce canal, une entrée reste périmée au plus orders.customer-cache.ttl.
+@Component
+@ConditionalOnProperty(name = "orders.customer-cache.invalidation", havingValue = "local")
+public class LocalOrderCacheInvalidation implements OrderCacheInvalidation {
+
+    @Override
+    public void publish(String customerId) {
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+    }
+}
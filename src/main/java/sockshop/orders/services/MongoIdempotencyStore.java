@@ -0,0 +1,268 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.entities.IdempotencyRecord;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.function.Supplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Clés partagées entre instances dans la collection IdempotencyKey : l'insertion (_id = clé) sert de verrou,
+// les doublons interrogent l'enregistrement jusqu'à ce qu'il passe à DONE puis relisent la commande.
+// L'enregistrement garde l'empreinte de la requête : un doublon d'un autre contenu est refusé (422).
+// Un enregistrement PENDING plus vieux que pending-timeout (instance arrêtée en cours de route) est repris.
+@Component
+@ConditionalOnProperty(name = "orders.idempotency.store", havingValue = "mongo")
+public class MongoIdempotencyStore implements IdempotencyStore {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Pipeline réactif seulement (ReactivePipelineConfiguration)
+    @Autowired
+    private ObjectProvider<ReactiveMongoTemplate> reactiveMongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${orders.idempotency.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${orders.idempotency.wait-timeout:10s}")
+    private Duration waitTimeout;
+
+    @Value("${orders.idempotency.pending-timeout:1m}")
+    private Duration pendingTimeout;
+
+    @Value("${orders.idempotency.poll-interval:50ms}")
+    private Duration pollInterval;
+
+    private Counter executed;
+    private Counter replayed;
+
+    @PostConstruct
+    public void init() {
+        executed = IdempotencyMetrics.counter(meterRegistry, "mongo", "executed");
+        replayed = IdempotencyMetrics.counter(meterRegistry, "mongo", "replayed");
+    }
+
+    // Index TTL : Mongo supprime lui-même les clés expirées
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureTtlIndex() {
+        try {
+            mongoTemplate.indexOps(IdempotencyRecord.class).ensureIndex(new Index()
+                    .on("createdAt", Sort.Direction.ASC)
+                    .named("createdAt_ttl")
+                    .expire(ttl));
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to create TTL index on IdempotencyKey: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public CustomerOrder execute(String key, String fingerprint, Supplier<CustomerOrder> action) {
+        // L'attente d'un premier essai ne dépasse pas l'échéance de la requête
+        long deadline = System.nanoTime() + Deadline.remainingNanos(waitTimeout.toNanos());
+        while (true) {
+            try {
+                mongoTemplate.insert(new IdempotencyRecord(key, fingerprint));
+            } catch (DuplicateKeyException e) {
+                CustomerOrder order = awaitFirstAttempt(key, fingerprint, deadline);
+                if (order != null) {
+                    replayed.increment();
+                    return order;
+                }
+                // Clé libérée (échec ou reprise d'un PENDING abandonné) : on retente l'insertion
+                continue;
+            }
+            executed.increment();
+            return run(key, action);
+        }
+    }
+
+    @Override
+    public Mono<CustomerOrder> executeReactive(String key, String fingerprint, Supplier<Mono<CustomerOrder>> action) {
+        long deadline = System.nanoTime() + Deadline.remainingNanos(waitTimeout.toNanos());
+        return attemptReactive(reactiveMongoTemplate.getObject(), key, fingerprint, action, deadline);
+    }
+
+    private Mono<CustomerOrder> attemptReactive(ReactiveMongoTemplate template, String key, String fingerprint,
+                                                Supplier<Mono<CustomerOrder>> action, long deadline) {
+        return Mono.defer(() -> template.insert(new IdempotencyRecord(key, fingerprint)))
+                .map(record -> true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false))
+                .flatMap(inserted -> {
+                    if (inserted) {
+                        executed.increment();
+                        return runReactive(template, key, action);
+                    }
+                    return awaitFirstAttemptReactive(template, key, fingerprint, deadline)
+                            .doOnNext(order -> replayed.increment())
+                            // Clé libérée (échec ou reprise d'un PENDING abandonné) : on retente l'insertion
+                            .switchIfEmpty(Mono.defer(() -> attemptReactive(template, key, fingerprint, action, deadline)));
+                });
+    }
+
+    private CustomerOrder run(String key, Supplier<CustomerOrder> action) {
+        CustomerOrder order;
+        try {
+            order = action.get();
+        } catch (OrderSaveInProgressException e) {
+            releaseAfterLateSave(key, e);
+            throw e;
+        } catch (RuntimeException e) {
+            mongoTemplate.remove(pending(key), IdempotencyRecord.class);
+            throw e;
+        }
+        done(key, order);
+        return order;
+    }
+
+    // Une requête abandonnée en cours de route laisse la clé PENDING : reprise au bout de pending-timeout
+    private Mono<CustomerOrder> runReactive(ReactiveMongoTemplate template, String key,
+                                            Supplier<Mono<CustomerOrder>> action) {
+        return action.get()
+                .onErrorResume(e -> {
+                    if (e instanceof OrderSaveInProgressException saving) {
+                        releaseAfterLateSave(key, saving);
+                        return Mono.error(e);
+                    }
+                    return template.remove(pending(key), IdempotencyRecord.class).then(Mono.error(e));
+                })
+                .flatMap(order -> template.updateFirst(Query.query(where("_id").is(key)), done(order),
+                        IdempotencyRecord.class).thenReturn(order));
+    }
+
+    // La commande peut encore être enregistrée : la clé reste PENDING jusqu'à l'issue de l'écriture
+    private void releaseAfterLateSave(String key, OrderSaveInProgressException e) {
+        e.getSaved().whenComplete((saved, failure) -> {
+            try {
+                if (failure == null) {
+                    done(key, saved);
+                } else {
+                    mongoTemplate.remove(pending(key), IdempotencyRecord.class);
+                }
+            } catch (RuntimeException ex) {
+                // Reprise au bout de pending-timeout
+                LOG.warn("Unable to update Idempotency-Key {} after a late save: {}", key, ex.getMessage());
+            }
+        });
+    }
+
+    private void done(String key, CustomerOrder order) {
+        mongoTemplate.updateFirst(Query.query(where("_id").is(key)), done(order), IdempotencyRecord.class);
+    }
+
+    private static Update done(CustomerOrder order) {
+        return new Update().set("status", IdempotencyRecord.DONE).set("orderId", order.getId());
+    }
+
+    private CustomerOrder awaitFirstAttempt(String key, String fingerprint, long deadline) {
+        while (true) {
+            // Lectures bornées par le temps restant (maxTimeMS)
+            IdempotencyRecord record = mongoTemplate.findOne(Deadline.maxTime(Query.query(where("_id").is(key))),
+                    IdempotencyRecord.class);
+            if (record == null) {
+                return null;
+            }
+            // Enregistrements antérieurs à l'empreinte : acceptés
+            if (record.getFingerprint() != null && !record.getFingerprint().equals(fingerprint)) {
+                throw IdempotencyMetrics.keyReused();
+            }
+            if (IdempotencyRecord.DONE.equals(record.getStatus())) {
+                CustomerOrder order = mongoTemplate.findOne(
+                        Deadline.maxTime(Query.query(where("_id").is(record.getOrderId()))), CustomerOrder.class);
+                if (order == null) {
+                    throw new IllegalStateException("Order " + record.getOrderId()
+                            + " recorded for Idempotency-Key " + key + " no longer exists.");
+                }
+                return order;
+            }
+            if (abandoned(record)) {
+                LOG.warn("Releasing abandoned Idempotency-Key {}", key);
+                mongoTemplate.remove(abandonedPending(key, record), IdempotencyRecord.class);
+                return null;
+            }
+            if (System.nanoTime() > deadline) {
+                throw IdempotencyMetrics.stillInProgress();
+            }
+            try {
+                Thread.sleep(pollInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a previous attempt of the same order.", e);
+            }
+        }
+    }
+
+    // Même attente, par interrogations espacées de poll-interval sans bloquer de thread ; vide si la clé est libérée
+    private Mono<CustomerOrder> awaitFirstAttemptReactive(ReactiveMongoTemplate template, String key,
+                                                          String fingerprint, long deadline) {
+        return template.findOne(maxTime(Query.query(where("_id").is(key)), deadline), IdempotencyRecord.class)
+                .flatMap(record -> {
+                    if (record.getFingerprint() != null && !record.getFingerprint().equals(fingerprint)) {
+                        return Mono.error(IdempotencyMetrics.keyReused());
+                    }
+                    if (IdempotencyRecord.DONE.equals(record.getStatus())) {
+                        return template.findOne(maxTime(Query.query(where("_id").is(record.getOrderId())), deadline),
+                                        CustomerOrder.class)
+                                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Order " + record.getOrderId()
+                                        + " recorded for Idempotency-Key " + key + " no longer exists.")));
+                    }
+                    if (abandoned(record)) {
+                        LOG.warn("Releasing abandoned Idempotency-Key {}", key);
+                        return template.remove(abandonedPending(key, record), IdempotencyRecord.class)
+                                .then(Mono.<CustomerOrder>empty());
+                    }
+                    if (System.nanoTime() > deadline) {
+                        return Mono.error(IdempotencyMetrics.stillInProgress());
+                    }
+                    return Mono.delay(pollInterval)
+                            .then(Mono.defer(() -> awaitFirstAttemptReactive(template, key, fingerprint, deadline)));
+                });
+    }
+
+    private boolean abandoned(IdempotencyRecord record) {
+        return System.currentTimeMillis() - record.getCreatedAt().getTime() > pendingTimeout.toMillis();
+    }
+
+    private static Query abandonedPending(String key, IdempotencyRecord record) {
+        return Query.query(where("_id").is(key)
+                .and("status").is(IdempotencyRecord.PENDING)
+                .and("createdAt").is(record.getCreatedAt()));
+    }
+
+    // maxTimeMS = temps restant jusqu'à deadline (au moins 1 ms), comme Deadline.maxTime
+    private static Query maxTime(Query query, long deadline) {
+        return query.maxTimeMsec(Math.max(1, (deadline - System.nanoTime()) / 1_000_000));
+    }
+
+    private static Query pending(String key) {
+        return Query.query(where("_id").is(key).and("status").is(IdempotencyRecord.PENDING));
+    }
+}
@@ -0,0 +1,98 @@
+package sockshop.orders.services;
+
+import com.mongodb.WriteConcern;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.TailableCursorRequest;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Invalidations publiées dans une collection plafonnée (capped) que chaque instance suit par un curseur tailable :
+// pas de broker en plus, et contrairement aux change streams, fonctionne aussi sans replica set.
+// Chaque instance ignore ses propres messages (origin) ; un message perdu laisse au pire une entrée jusqu'au TTL.
+@Component
+@ConditionalOnProperty(name = "orders.customer-cache.invalidation", havingValue = "mongo", matchIfMissing = true)
+public class MongoOrderCacheInvalidation implements OrderCacheInvalidation {
+
+    static final String COLLECTION = "OrderCacheInvalidation";
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${orders.customer-cache.invalidation-log-size:1MB}")
+    private DataSize logSize;
+
+    private final String origin = UUID.randomUUID().toString();
+
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    private DefaultMessageListenerContainer container;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        try {
+            if (!mongoTemplate.collectionExists(COLLECTION)) {
+                mongoTemplate.createCollection(COLLECTION, CollectionOptions.empty().capped().size(logSize.toBytes()));
+                // Un curseur tailable sur une collection vide se ferme aussitôt
+                mongoTemplate.getCollection(COLLECTION).insertOne(new Document("origin", origin));
+            }
+        } catch (RuntimeException e) {
+            // Collection créée en même temps par une autre instance
+            LOG.debug("Unable to create {}: {}", COLLECTION, e.getMessage());
+        }
+        container = new DefaultMessageListenerContainer(mongoTemplate);
+        container.start();
+        container.register(TailableCursorRequest.builder(this::onMessage)
+                .collection(COLLECTION)
+                .filter(Query.query(where("origin").ne(origin)))
+                .build(), Document.class);
+    }
+
+    private void onMessage(Message<Document, Document> message) {
+        String customerId = message.getBody() == null ? null : message.getBody().getString("customerId");
+        if (customerId != null) {
+            listeners.forEach(listener -> listener.accept(customerId));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    // Sans accusé de réception : pas d'aller-retour Mongo en plus sur le chemin de la commande
+    @Override
+    public void publish(String customerId) {
+        mongoTemplate.getCollection(COLLECTION)
+                .withWriteConcern(WriteConcern.UNACKNOWLEDGED)
+                .insertOne(new Document("customerId", customerId).append("origin", origin));
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+}
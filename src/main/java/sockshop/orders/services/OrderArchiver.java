@@ -0,0 +1,152 @@
+package sockshop.orders.services;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.repositories.OrderArchive;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Déplace vers CustomerOrderArchive les commandes de plus de orders.archive.after (orders.archive.enabled=true), pour
+// que le cache WiredTiger de CustomerOrder ne garde que les commandes récentes. Un passage toutes les run-interval ;
+// pendant un passage, un lot de batch-size commandes (les plus anciennes, index date) par batch-interval, pour ne pas
+// concurrencer les requêtes. Chaque lot est copié puis supprimé dans une même transaction : une commande modifiée
+// pendant le lot fait échouer la transaction (conflit d'écriture) et le lot est repris au tick suivant.
+@Component
+public class OrderArchiver {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private TransactionTemplate mongoTransactionTemplate;
+
+    @Autowired
+    private OrderArchive orderArchive;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${orders.archive.after:90d}")
+    private Duration after;
+
+    @Value("${orders.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${orders.archive.run-interval:1h}")
+    private Duration runInterval;
+
+    private Counter moved;
+
+    private Timer runs;
+
+    // Passage en cours, son début et celui du prochain passage (System.nanoTime)
+    private boolean running;
+
+    private long runStart;
+
+    private long nextRun;
+
+    private long runMoved;
+
+    @PostConstruct
+    public void init() {
+        moved = Counter.builder("orders_archive_moved_documents")
+                .description("CustomerOrder documents moved to the archive collection")
+                .register(meterRegistry);
+        runs = Timer.builder("orders_archive_run_duration")
+                .description("Duration of one archival run, from its first batch to the last one")
+                .register(meterRegistry);
+        nextRun = System.nanoTime();
+    }
+
+    @Scheduled(fixedDelayString = "${orders.archive.batch-interval:1s}")
+    public void archive() {
+        if (!orderArchive.isEnabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (!running) {
+            if (now - nextRun < 0) {
+                return;
+            }
+            running = true;
+            runStart = now;
+            runMoved = 0;
+        }
+        try {
+            int count = moveBatch(new Date(System.currentTimeMillis() - after.toMillis()));
+            moved.increment(count);
+            runMoved += count;
+            if (count < batchSize) {
+                endRun();
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Order archival batch failed: {}", e.getMessage());
+        }
+    }
+
+    private int moveBatch(Date cutoff) {
+        Integer count = mongoTransactionTemplate.execute(status -> {
+            // Collections obtenues par MongoTemplate : les opérations rejoignent la transaction en cours
+            MongoCollection<Document> active = mongoTemplate.getCollection(
+                    mongoTemplate.getCollectionName(CustomerOrder.class));
+            MongoCollection<Document> archive = mongoTemplate.getCollection(OrderArchive.COLLECTION);
+            List<Document> batch = active.find(Filters.lt("date", cutoff))
+                    .sort(Sorts.ascending("date"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            // Remplacement plutôt qu'insertion : une commande déjà archivée puis réécrite dans CustomerOrder
+            // remplace sa copie archivée
+            List<ReplaceOneModel<Document>> copies = new ArrayList<>(batch.size());
+            List<Object> ids = new ArrayList<>(batch.size());
+            for (Document document : batch) {
+                copies.add(new ReplaceOneModel<>(Filters.eq("_id", document.get("_id")), document,
+                        new ReplaceOptions().upsert(true)));
+                ids.add(document.get("_id"));
+            }
+            archive.bulkWrite(copies, new BulkWriteOptions().ordered(false));
+            active.deleteMany(Filters.in("_id", ids));
+            return batch.size();
+        });
+        return count == null ? 0 : count;
+    }
+
+    private void endRun() {
+        long now = System.nanoTime();
+        runs.record(now - runStart, TimeUnit.NANOSECONDS);
+        if (runMoved > 0) {
+            LOG.info("Archived {} orders older than {} in {} ms", runMoved, after,
+                    TimeUnit.NANOSECONDS.toMillis(now - runStart));
+        }
+        running = false;
+        nextRun = now + runInterval.toNanos();
+    }
+}
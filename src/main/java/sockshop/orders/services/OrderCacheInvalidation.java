@@ -0,0 +1,14 @@
+package sockshop.orders.services;
+
+import java.util.function.Consumer;
+
+// Canal d'invalidation de CustomerOrderCache entre instances : local (une seule instance) ou mongo
+// (collection plafonnée suivie par toutes les instances), choisi par orders.customer-cache.invalidation.
+public interface OrderCacheInvalidation {
+
+    // Les commandes de ce client ont changé sur cette instance
+    void publish(String customerId);
+
+    // listener reçoit les clients publiés par les autres instances
+    void subscribe(Consumer<String> listener);
+}
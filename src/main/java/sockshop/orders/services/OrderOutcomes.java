@@ -0,0 +1,136 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Issue de chaque tentative de commande (POST /orders, batch, pipeline réactif), sans verrou :
+// totaux en LongAdder exportés en compteurs Micrometer, et seaux d'une seconde sur les 15 dernières minutes
+// pour les débits glissants de /orders/stats.
+@Component
+public class OrderOutcomes {
+
+    public enum Outcome {
+        SUCCESS("success"),
+        DECLINED("declined"),
+        TIMEOUT("timeout"),
+        INVALID("invalid"),
+        UPSTREAM_ERROR("upstream_error");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    static final int WINDOW_SECONDS = 900;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Outcome, LongAdder> totals = new EnumMap<>(Outcome.class);
+
+    private final Bucket[] buckets = new Bucket[WINDOW_SECONDS + 1];
+
+    public OrderOutcomes() {
+        for (Outcome outcome : Outcome.values()) {
+            totals.put(outcome, new LongAdder());
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    @PostConstruct
+    public void initMetrics() {
+        for (Outcome outcome : Outcome.values()) {
+            FunctionCounter.builder("orders_outcomes_total", totals.get(outcome), LongAdder::sum)
+                    .description("Order attempts by outcome")
+                    .tag("outcome", outcome.getTag())
+                    .register(meterRegistry);
+        }
+    }
+
+    // Renvoie le total de l'issue après incrément (approximatif sous forte concurrence, utilisé pour les logs)
+    public long record(Outcome outcome) {
+        return record(outcome, System.currentTimeMillis() / 1000);
+    }
+
+    // second, now : horloge fournie par les tests
+    long record(Outcome outcome, long second) {
+        LongAdder total = totals.get(outcome);
+        total.increment();
+        bucket(second).counts[outcome.ordinal()].increment();
+        return total.sum();
+    }
+
+    public long total(Outcome outcome) {
+        return totals.get(outcome).sum();
+    }
+
+    // Débit moyen par seconde de chaque issue sur la fenêtre (au plus 15 minutes), seconde en cours exclue
+    public Map<Outcome, Double> rates(Duration window) {
+        return rates(window, System.currentTimeMillis() / 1000);
+    }
+
+    Map<Outcome, Double> rates(Duration window, long now) {
+        int seconds = (int) Math.min(Math.max(window.getSeconds(), 1), WINDOW_SECONDS);
+        long[] sums = new long[Outcome.values().length];
+        for (long second = now - seconds; second < now; second++) {
+            Bucket bucket = buckets[(int) (second % buckets.length)];
+            if (bucket.second.get() == second) {
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] += bucket.counts[i].sum();
+                }
+            }
+        }
+        Map<Outcome, Double> rates = new EnumMap<>(Outcome.class);
+        for (Outcome outcome : Outcome.values()) {
+            rates.put(outcome, (double) sums[outcome.ordinal()] / seconds);
+        }
+        return rates;
+    }
+
+    public Map<Outcome, Long> totals() {
+        Map<Outcome, Long> snapshot = new EnumMap<>(Outcome.class);
+        totals.forEach((outcome, total) -> snapshot.put(outcome, total.sum()));
+        return snapshot;
+    }
+
+    // Seau de la seconde donnée ; un seau resté sur une seconde plus ancienne est remis à zéro par le premier
+    // thread qui le réutilise (quelques incréments concurrents peuvent se perdre à ce moment, sans effet sur les totaux)
+    private Bucket bucket(long second) {
+        Bucket bucket = buckets[(int) (second % buckets.length)];
+        long current = bucket.second.get();
+        if (current != second && current < second && bucket.second.compareAndSet(current, second)) {
+            for (LongAdder count : bucket.counts) {
+                count.reset();
+            }
+        }
+        return bucket;
+    }
+
+    private static class Bucket {
+        private final AtomicLong second = new AtomicLong(-1);
+        private final LongAdder[] counts = new LongAdder[Outcome.values().length];
+
+        Bucket() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package sockshop.orders.services;
+
+import com.mongodb.WriteConcern;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.WriteConcernResolver;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.repositories.CustomerOrderRepository;
+import sockshop.orders.repositories.OrderRollup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Enregistrement des commandes selon orders.persistence.mode :
+//  - default      : write concern du client Mongo (comportement historique)
+//  - strict       : majority + journal, la commande survit à une bascule du primaire
+//  - fast         : w:1 sans attente du journal, un aller-retour plus court mais une commande acquittée peut être perdue
+//                   si le primaire tombe avant réplication
+//  - group-commit : write concern strict, les commandes des requêtes concurrentes arrivées dans la même fenêtre
+//                   partent dans un seul insertMany (une seule transaction avec l'outbox)
+// Le write concern s'applique aux écritures de la collection CustomerOrder hors transaction ; pour l'outbox, c'est
+// celui du commit (voir OutboxConfiguration).
+@Component
+public class OrderPersistence {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectProvider<ReactiveMongoTemplate> reactiveMongoTemplate;
+
+    @Autowired
+    private CustomerOrderRepository customerOrderRepository;
+
+    @Autowired
+    private ShipmentOutbox shipmentOutbox;
+
+    @Autowired
+    private OrderRollup orderRollup;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${orders.persistence.mode:default}")
+    private String mode;
+
+    @Value("${orders.persistence.group-commit.window:2ms}")
+    private Duration window;
+
+    @Value("${orders.persistence.group-commit.max-batch-size:64}")
+    private int maxBatchSize;
+
+    @Value("${orders.persistence.group-commit.queue-capacity:1024}")
+    private int queueCapacity;
+
+    @Value("${orders.persistence.group-commit.wait-timeout:5s}")
+    private Duration waitTimeout;
+
+    private DistributionSummary batchSizes;
+
+    private Timer commits;
+
+    private Timer saves;
+
+    private GroupCommitter<CustomerOrder> groupCommitter;
+
+    // null = write concern par défaut du client
+    public static WriteConcern writeConcern(String mode) {
+        return switch (mode) {
+            case "default" -> null;
+            case "strict", "group-commit" -> WriteConcern.MAJORITY.withJournal(true);
+            case "fast" -> WriteConcern.W1.withJournal(false);
+            default -> throw new IllegalStateException("Unknown orders.persistence.mode: " + mode);
+        };
+    }
+
+    // Par collection et non par type d'entité : les insertions en lot (insertMany de insertAll) passent
+    // une MongoAction sans type
+    static WriteConcernResolver writeConcernResolver(String collection, WriteConcern writeConcern) {
+        return action -> collection.equals(action.getCollectionName())
+                ? writeConcern : action.getDefaultWriteConcern();
+    }
+
+    @PostConstruct
+    public void init() {
+        WriteConcern writeConcern = writeConcern(mode);
+        if (writeConcern != null) {
+            WriteConcernResolver resolver = writeConcernResolver(
+                    mongoTemplate.getCollectionName(CustomerOrder.class), writeConcern);
+            mongoTemplate.setWriteConcernResolver(resolver);
+            reactiveMongoTemplate.ifAvailable(template -> template.setWriteConcernResolver(resolver));
+        }
+
+        batchSizes = DistributionSummary.builder("orders_persistence_batch_size")
+                .description("Orders written per Mongo commit")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        commits = Timer.builder("orders_persistence_commit_duration")
+                .description("Duration of one Mongo commit of one or more orders")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        saves = Timer.builder("orders_persistence_save_duration")
+                .description("Time a request waits for its order to be saved, group-commit window included")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        if ("group-commit".equals(mode)) {
+            groupCommitter = new GroupCommitter<>("orders-group-commit", this::insertAll, this::write,
+                    window, maxBatchSize, queueCapacity, batchSizes, commits);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (groupCommitter != null) {
+            groupCommitter.stop();
+        }
+    }
+
+    public CustomerOrder save(CustomerOrder order) {
+        long start = System.nanoTime();
+        try {
+            if (groupCommitter == null) {
+                CustomerOrder savedOrder = write(order);
+                commits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batchSizes.record(1);
+                return savedOrder;
+            }
+            return await(groupCommitter.submit(order));
+        } finally {
+            saves.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Pipeline réactif (orders.pipeline=reactive) : mêmes modes sans bloquer de thread. Le group commit est attendu
+    // sur son futur, les autres modes écrivent par ReactiveMongoTemplate (transaction réactive avec l'outbox)
+    public Mono<CustomerOrder> saveReactive(CustomerOrder order) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Mono<CustomerOrder> savedOrder = groupCommitter == null
+                    ? writeReactive(order).doOnNext(saved -> {
+                        commits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        batchSizes.record(1);
+                    })
+                    : awaitReactive(groupCommitter.submit(order));
+            return savedOrder.doFinally(signal -> saves.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    // Lot déjà constitué (POST /orders/batch) : écrit tel quel, sans passer par la fenêtre
+    public List<CustomerOrder> saveAll(List<CustomerOrder> orders) {
+        long start = System.nanoTime();
+        List<CustomerOrder> savedOrders = insertAll(orders);
+        long elapsed = System.nanoTime() - start;
+        commits.record(elapsed, TimeUnit.NANOSECONDS);
+        saves.record(elapsed, TimeUnit.NANOSECONDS);
+        batchSizes.record(orders.size());
+        return savedOrders;
+    }
+
+    // Aussi le repli du group commit : l'id déjà attribué par insertAll fait de save un remplacement, et l'outbox
+    // (une expédition par id de commande) ne se duplique pas
+    private CustomerOrder write(CustomerOrder order) {
+        CustomerOrder savedOrder = shipmentOutbox.isEnabled()
+                ? shipmentOutbox.save(order)
+                : customerOrderRepository.save(order);
+        orderRollup.recorded(List.of(savedOrder));
+        return savedOrder;
+    }
+
+    private Mono<CustomerOrder> writeReactive(CustomerOrder order) {
+        Mono<CustomerOrder> savedOrder = shipmentOutbox.isEnabled()
+                ? shipmentOutbox.saveReactive(order)
+                : reactiveMongoTemplate.getObject().save(order);
+        return savedOrder.flatMap(saved -> orderRollup.recordedReactive(List.of(saved)).thenReturn(saved));
+    }
+
+    private List<CustomerOrder> insertAll(List<CustomerOrder> orders) {
+        // Ids attribués avant l'insertMany : si le lot échoue à moitié, la réécriture une à une (save) remplace
+        // les commandes déjà insérées au lieu de les dupliquer
+        orders.stream().filter(order -> order.getId() == null)
+                .forEach(order -> order.setId(new ObjectId().toHexString()));
+        List<CustomerOrder> savedOrders = shipmentOutbox.isEnabled()
+                ? shipmentOutbox.insertAll(orders)
+                : customerOrderRepository.insert(orders);
+        // Un seul aller-retour de cumul par lot
+        orderRollup.recorded(savedOrders);
+        return savedOrders;
+    }
+
+    private CustomerOrder await(CompletableFuture<CustomerOrder> savedOrder) {
+        try {
+            return savedOrder.get(Deadline.remainingNanos(waitTimeout.toNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // La commande peut encore être écrite par le lot en cours : issue inconnue, pas un échec
+            throw new OrderSaveInProgressException(
+                    "Order is still waiting for its group commit; retry with the same Idempotency-Key", savedOrder);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Unable to save order", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the order to be saved", e);
+        }
+    }
+
+    private Mono<CustomerOrder> awaitReactive(CompletableFuture<CustomerOrder> savedOrder) {
+        // Annuler l'attente (requête abandonnée) ne retire pas la commande du lot
+        return Mono.fromFuture(savedOrder, true)
+                .timeout(waitTimeout)
+                .onErrorMap(TimeoutException.class, e -> new OrderSaveInProgressException(
+                        "Order is still waiting for its group commit; retry with the same Idempotency-Key", savedOrder));
+    }
+}
@@ -0,0 +1,26 @@
+package sockshop.orders.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import sockshop.orders.entities.CustomerOrder;
+
+import java.util.concurrent.CompletableFuture;
+
+// La commande attend encore son lot de group commit après wait-timeout : elle peut toujours être enregistrée.
+// saved se complète avec l'issue réelle ; l'IdempotencyStore garde la clé en attente jusque-là, un nouvel essai
+// avec la même clé reçoit donc la commande enregistrée plutôt qu'un second paiement.
+@ResponseStatus(value = HttpStatus.GATEWAY_TIMEOUT)
+public class OrderSaveInProgressException extends IllegalStateException {
+
+    private final transient CompletableFuture<CustomerOrder> saved;
+
+    public OrderSaveInProgressException(String s, CompletableFuture<CustomerOrder> saved) {
+        super(s);
+        this.saved = saved;
+    }
+
+    public CompletableFuture<CustomerOrder> getSaved() {
+        return saved;
+    }
+}
@@ -0,0 +1,128 @@
+package sockshop.orders.services;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import sockshop.orders.entities.*;
+import sockshop.orders.resources.PaymentResponse;
+
+import java.util.List;
+
+// Attributs de span d'une commande. Rien n'est calculé si le span n'est pas enregistré ;
+// sinon le détail dépend de orders.tracing.verbosity : ids (identifiants et montants), summary (+ quantités,
+// message de paiement, expédition) ou full (toString des entités, coûteux pour les gros paniers).
+// Le détail au-delà de ids n'est gardé que pour une fraction des traces, décidée sur le trace id
+// pour que tous les spans d'une même trace soient au même niveau.
+@Component
+public class OrderSpanAttributes {
+
+    public enum Level {
+        NONE, IDS, SUMMARY, FULL
+    }
+
+    private static final AttributeKey<String> CUSTOMER_ID = AttributeKey.stringKey("customerId");
+    private static final AttributeKey<String> ADDRESS_ID = AttributeKey.stringKey("addressId");
+    private static final AttributeKey<String> CARD_ID = AttributeKey.stringKey("cardId");
+    private static final AttributeKey<Long> ITEM_COUNT = AttributeKey.longKey("itemCount");
+    private static final AttributeKey<Long> ITEM_QUANTITY = AttributeKey.longKey("itemQuantity");
+    private static final AttributeKey<Double> AMOUNT = AttributeKey.doubleKey("amount");
+    private static final AttributeKey<String> PAYMENT_STATUS = AttributeKey.stringKey("paymentStatus");
+    private static final AttributeKey<String> PAYMENT_MESSAGE = AttributeKey.stringKey("paymentMessage");
+    private static final AttributeKey<String> SHIPMENT_ID = AttributeKey.stringKey("shipmentId");
+    private static final AttributeKey<String> ORDER_ID = AttributeKey.stringKey("orderId");
+
+    private static final AttributeKey<String> ADDRESS = AttributeKey.stringKey("address");
+    private static final AttributeKey<String> CUSTOMER = AttributeKey.stringKey("customer");
+    private static final AttributeKey<String> CARD = AttributeKey.stringKey("card");
+    private static final AttributeKey<String> ITEMS = AttributeKey.stringKey("items");
+    private static final AttributeKey<String> PAYMENT_RESPONSE = AttributeKey.stringKey("paymentResponse");
+    private static final AttributeKey<String> SAVED_ORDER = AttributeKey.stringKey("saved order");
+
+    private final Level verbosity;
+
+    private final long sampleBound;
+
+    public OrderSpanAttributes(@Value("${orders.tracing.verbosity:ids}") String verbosity,
+                               @Value("${orders.tracing.payload-sample-ratio:1.0}") double payloadSampleRatio) {
+        this.verbosity = Level.valueOf(verbosity.trim().toUpperCase());
+        if (this.verbosity == Level.NONE) {
+            throw new IllegalStateException("orders.tracing.verbosity must be ids, summary or full");
+        }
+        this.sampleBound = payloadSampleRatio >= 1.0 ? Long.MAX_VALUE : (long) (Math.max(payloadSampleRatio, 0.0) * Long.MAX_VALUE);
+    }
+
+    // Niveau à appliquer pour toute la durée de la requête
+    public Level level(Span span) {
+        if (!span.isRecording()) {
+            return Level.NONE;
+        }
+        if (verbosity == Level.IDS || sampleBound == Long.MAX_VALUE) {
+            return verbosity;
+        }
+        return sampled(span.getSpanContext()) ? verbosity : Level.IDS;
+    }
+
+    // Même principe que l'échantillonneur TraceIdRatioBased d'OpenTelemetry : 63 bits de poids faible du trace id
+    private boolean sampled(SpanContext context) {
+        String traceId = context.getTraceId();
+        long random = Long.parseUnsignedLong(traceId, 16, 32, 16) >>> 1;
+        return random < sampleBound;
+    }
+
+    public void lookups(Span span, Level level, Address address, Customer customer, Card card, List<Item> items,
+                        float amount) {
+        if (level == Level.NONE) {
+            return;
+        }
+        span.setAttribute(CUSTOMER_ID, customer.getId());
+        span.setAttribute(ADDRESS_ID, address.getId());
+        span.setAttribute(CARD_ID, card.getId());
+        span.setAttribute(ITEM_COUNT, (long) items.size());
+        span.setAttribute(AMOUNT, (double) amount);
+        if (level == Level.IDS) {
+            return;
+        }
+        long quantity = 0;
+        for (Item item : items) {
+            quantity += item.getQuantity();
+        }
+        span.setAttribute(ITEM_QUANTITY, quantity);
+        if (level == Level.FULL) {
+            span.setAttribute(ADDRESS, address.toString());
+            span.setAttribute(CUSTOMER, customer.toString());
+            span.setAttribute(CARD, card.toString());
+            span.setAttribute(ITEMS, items.toString());
+        }
+    }
+
+    public void payment(Span span, Level level, PaymentResponse paymentResponse) {
+        if (level == Level.NONE) {
+            return;
+        }
+        span.setAttribute(PAYMENT_STATUS, paymentResponse.isAuthorised() ? "authorised" : "unauthorised");
+        if (level == Level.SUMMARY && paymentResponse.getMessage() != null) {
+            span.setAttribute(PAYMENT_MESSAGE, paymentResponse.getMessage());
+        } else if (level == Level.FULL) {
+            span.setAttribute(PAYMENT_RESPONSE, paymentResponse.toString());
+        }
+    }
+
+    public void savedOrder(Span span, Level level, CustomerOrder order) {
+        if (level == Level.NONE) {
+            return;
+        }
+        span.setAttribute(ORDER_ID, order.getId());
+        if (level == Level.IDS) {
+            return;
+        }
+        if (order.getShipment() != null && order.getShipment().getId() != null) {
+            span.setAttribute(SHIPMENT_ID, order.getShipment().getId());
+        }
+        if (level == Level.FULL) {
+            span.setAttribute(SAVED_ORDER, order.toString());
+        }
+    }
+}
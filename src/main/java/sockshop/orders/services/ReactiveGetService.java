@@ -0,0 +1,140 @@
+package sockshop.orders.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import sockshop.orders.services.ResourceCache.CachedResource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.MediaTypes.HAL_JSON;
+
+// Équivalent non bloquant d'AsyncGetService (WebClient), utilisé par le pipeline réactif : même cache de ressources
+// (ETag compris), même bulkhead et circuit breaker par service. Pas de hedging (refusé au démarrage).
+@Service
+@ConditionalOnProperty(name = "orders.pipeline", havingValue = "reactive")
+public class ReactiveGetService {
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final WebClient halClient;
+
+    private final ResourceCache resourceCache;
+
+    private final UpstreamResilience upstreamResilience;
+
+    private final Map<Upstream, Timer> successTimers = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Timer> errorTimers = new EnumMap<>(Upstream.class);
+
+    public ReactiveGetService(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry, ResourceCache resourceCache,
+                              UpstreamResilience upstreamResilience) {
+        this.resourceCache = resourceCache;
+        this.upstreamResilience = upstreamResilience;
+        ObjectMapper objectMapper = AsyncGetService.halObjectMapper();
+        this.halClient = webClientBuilder
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonDecoder(
+                            new Jackson2JsonDecoder(objectMapper, HAL_JSON, MediaType.APPLICATION_JSON));
+                    codecs.defaultCodecs().jackson2JsonEncoder(
+                            new Jackson2JsonEncoder(objectMapper, MediaType.APPLICATION_JSON));
+                })
+                .build();
+
+        for (Upstream upstream : Upstream.values()) {
+            successTimers.put(upstream, upstreamTimer(meterRegistry, upstream, "success"));
+            errorTimers.put(upstream, upstreamTimer(meterRegistry, upstream, "error"));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Mono<EntityModel<T>> getResource(Upstream upstream, URI url,
+                                                ParameterizedTypeReference<EntityModel<T>> type) {
+        if (!upstream.isCacheable() || !resourceCache.isEnabled()) {
+            return fetchResource(upstream, url, type, null).map(resource -> (EntityModel<T>) resource.getBody());
+        }
+        // Chargement partagé par les requêtes qui attendent cette URI : lancé par toFuture, indépendamment de
+        // l'abonné, qui peut l'abandonner (timeout de sa requête) sans l'annuler pour les autres
+        return Mono.fromFuture(() -> resourceCache.get(url, stale -> fetchResource(upstream, url, type, stale).toFuture()),
+                        true)
+                .map(resource -> (EntityModel<T>) resource.getBody());
+    }
+
+    private <T> Mono<CachedResource> fetchResource(Upstream upstream, URI url,
+                                                   ParameterizedTypeReference<EntityModel<T>> type, CachedResource stale) {
+        LOG.debug("Requesting: GET {}", url);
+        return timed(upstream, halClient.get()
+                .uri(url)
+                .accept(HAL_JSON)
+                .headers(headers -> {
+                    if (stale != null) {
+                        headers.setIfNoneMatch(stale.getEtag());
+                    }
+                })
+                .retrieve()
+                .toEntity(type))
+                .map(response -> stale != null && response.getStatusCode() == HttpStatus.NOT_MODIFIED
+                        ? stale.revalidated()
+                        : new CachedResource(response.getBody(), response.getHeaders().getETag()));
+    }
+
+    public <R> Mono<R> getDataList(Upstream upstream, URI url, ParameterizedTypeReference<R> type) {
+        LOG.debug("Requesting: GET {}", url);
+        return timed(upstream, halClient.get()
+                .uri(url)
+                .accept(type.getType().equals(CollectionModel.class) ? HAL_JSON : MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(type));
+    }
+
+    public <T, B> Mono<T> postResource(Upstream upstream, URI uri, B body, ParameterizedTypeReference<T> returnType) {
+        LOG.debug("Requesting: POST {}", uri);
+        return timed(upstream, halClient.post()
+                .uri(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(HAL_JSON, MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(returnType))
+                .onErrorMap(e -> e instanceof WebClientResponseException w && w.getStatusCode().is4xxClientError(),
+                        e -> {
+                            WebClientResponseException w = (WebClientResponseException) e;
+                            LOG.error("HTTP error while posting to {}: {} - {}", uri, w.getStatusCode(), w.getResponseBodyAsString());
+                            return new IOException("Failed to post resource to " + uri + ": " + w.getStatusCode() + " - " + w.getResponseBodyAsString(), e);
+                        });
+    }
+
+    // Bulkhead et circuit breaker du service, puis timers (un appel refusé n'y entre pas)
+    private <T> Mono<T> timed(Upstream upstream, Mono<T> call) {
+        return upstreamResilience.call(upstream, Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(body -> successTimers.get(upstream).record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(e -> errorTimers.get(upstream).record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        }));
+    }
+
+    private static Timer upstreamTimer(MeterRegistry meterRegistry, Upstream upstream, String outcome) {
+        return Timer.builder("orders_upstream_requests")
+                .description("Latency of calls to upstream services")
+                .tags("dependency", upstream.getTag(), "outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,266 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Requêtes de secours (hedging) pour les GET idempotents d'AsyncGetService : si la réponse tarde au-delà du
+// percentile configuré des latences récentes de la dépendance, une seconde requête identique part, la première
+// réponse l'emporte et l'autre est annulée (requête HTTP interrompue). Un budget par dépendance (fraction des
+// requêtes, avec une petite réserve) plafonne le nombre de secours pour ne pas doubler la charge d'un service lent.
+@Component
+public class RequestHedging {
+
+    // Tentative exécutée par le thread courant, pour rattacher la requête HTTP créée par la fabrique
+    private static final ThreadLocal<Attempt<?>> CURRENT_ATTEMPT = new ThreadLocal<>();
+
+    // Pas de seuil avant ce nombre de mesures, puis recalcul toutes les RECOMPUTE_EVERY mesures
+    private static final int MIN_SAMPLES = 50;
+    private static final int RECOMPUTE_EVERY = 32;
+
+    // Budget en millièmes de requête de secours
+    private static final long TOKEN = 1000;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${orders.hedging.enabled:false}")
+    private boolean enabled;
+
+    @Value("${orders.hedging.percentile:95}")
+    private double percentile;
+
+    @Value("${orders.hedging.min-delay:5ms}")
+    private Duration minDelay;
+
+    @Value("${orders.hedging.budget-ratio:0.05}")
+    private double budgetRatio;
+
+    @Value("${orders.hedging.max-burst:10}")
+    private int maxBurst;
+
+    @Value("${orders.hedging.window-size:512}")
+    private int windowSize;
+
+    private final Map<Upstream, HedgedUpstream> upstreams = new EnumMap<>(Upstream.class);
+
+    private ScheduledThreadPoolExecutor scheduler;
+
+    @PostConstruct
+    public void init() {
+        for (Upstream upstream : Upstream.values()) {
+            HedgedUpstream hedged = new HedgedUpstream(upstream, windowSize);
+            upstreams.put(upstream, hedged);
+            if (enabled) {
+                Gauge.builder("orders_upstream_hedge_delay", hedged, h -> h.thresholdNanos < 0 ? -1 : h.thresholdNanos / 1e9)
+                        .description("Current delay before a hedged request is sent (-1 until enough samples)")
+                        .tag("dependency", upstream.getTag())
+                        .baseUnit("seconds")
+                        .register(meterRegistry);
+            }
+        }
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "orders-hedging");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Rattache la requête HTTP créée sur ce thread (UpstreamRequestFactory) à la tentative en cours, pour l'annuler
+    static void attachToCurrentAttempt(Cancellable request) {
+        Attempt<?> attempt = CURRENT_ATTEMPT.get();
+        if (attempt != null) {
+            attempt.attach(request);
+        }
+    }
+
+    // Vrai si l'appel en cours sur ce thread a été abandonné au profit de l'autre tentative :
+    // son échec ne dit rien de l'état du service (ni circuit breaker, ni timer d'erreur)
+    public static boolean isCurrentAttemptCancelled() {
+        Attempt<?> attempt = CURRENT_ATTEMPT.get();
+        return attempt != null && attempt.cancelled;
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(Upstream upstream, Supplier<T> call, Executor executor) {
+        if (!enabled) {
+            return CompletableFuture.supplyAsync(call, executor);
+        }
+        HedgedUpstream hedged = upstreams.get(upstream);
+        hedged.deposit(budgetRatio, maxBurst);
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        Attempt<T> primary = start(hedged, call, executor, result, running, false);
+        AtomicReference<Attempt<T>> secondary = new AtomicReference<>();
+
+        long delay = hedged.thresholdNanos;
+        if (delay > 0) {
+            // Le secours part du thread du scheduler : il reprend l'échéance de la requête d'origine
+            ScheduledFuture<?> timer = scheduler.schedule(Deadline.wrap(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                if (!hedged.withdraw()) {
+                    hedged.overBudget.increment();
+                    return;
+                }
+                running.incrementAndGet();
+                try {
+                    Attempt<T> hedge = start(hedged, call, executor, result, running, true);
+                    secondary.set(hedge);
+                    hedged.sent.increment();
+                    if (result.isDone()) {
+                        hedge.cancelIfRunning();
+                    }
+                } catch (RejectedExecutionException e) {
+                    running.decrementAndGet();
+                }
+            }), delay, TimeUnit.NANOSECONDS);
+            result.whenComplete((value, e) -> timer.cancel(false));
+        }
+
+        // La réponse retenue annule l'autre tentative si elle est encore en cours
+        result.whenComplete((value, e) -> {
+            Attempt<T> hedge = secondary.get();
+            primary.cancelIfRunning();
+            if (hedge != null) {
+                hedge.cancelIfRunning();
+            }
+        });
+        return result;
+    }
+
+    private <T> Attempt<T> start(HedgedUpstream hedged, Supplier<T> call, Executor executor,
+                                 CompletableFuture<T> result, AtomicInteger running, boolean hedge) {
+        Attempt<T> attempt = new Attempt<>();
+        attempt.future = CompletableFuture.supplyAsync(() -> {
+            if (attempt.cancelled) {
+                throw new CancellationException("Hedged request no longer needed");
+            }
+            CURRENT_ATTEMPT.set(attempt);
+            long start = System.nanoTime();
+            try {
+                T value = call.get();
+                hedged.record(System.nanoTime() - start, percentile, minDelay.toNanos());
+                return value;
+            } finally {
+                CURRENT_ATTEMPT.remove();
+            }
+        }, executor);
+        // Première réussite gagnante ; un échec n'est rendu que s'il n'y a plus d'autre tentative en cours
+        attempt.future.whenComplete((value, e) -> {
+            if (e == null) {
+                if (result.complete(value) && hedge) {
+                    hedged.won.increment();
+                }
+            } else if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        });
+        return attempt;
+    }
+
+    private static class Attempt<T> {
+        private CompletableFuture<T> future;
+        private volatile Cancellable request;
+        private volatile boolean cancelled;
+
+        void attach(Cancellable request) {
+            this.request = request;
+            if (cancelled) {
+                request.cancel();
+            }
+        }
+
+        void cancelIfRunning() {
+            if (future.isDone()) {
+                return;
+            }
+            cancelled = true;
+            Cancellable current = request;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    // Latences récentes, seuil de déclenchement et budget d'une dépendance
+    private class HedgedUpstream {
+        private final AtomicLongArray samples;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong budget = new AtomicLong();
+        private volatile long thresholdNanos = -1;
+
+        private final Counter sent;
+        private final Counter won;
+        private final Counter overBudget;
+
+        HedgedUpstream(Upstream upstream, int windowSize) {
+            this.samples = new AtomicLongArray(windowSize);
+            this.sent = hedgeCounter(upstream, "sent");
+            this.won = hedgeCounter(upstream, "won");
+            this.overBudget = hedgeCounter(upstream, "over_budget");
+        }
+
+        void record(long nanos, double percentile, long minDelayNanos) {
+            long n = count.incrementAndGet();
+            samples.set((int) ((n - 1) % samples.length()), nanos);
+            if (n >= MIN_SAMPLES && n % RECOMPUTE_EVERY == 0) {
+                int size = (int) Math.min(n, samples.length());
+                long[] sorted = new long[size];
+                for (int i = 0; i < size; i++) {
+                    sorted[i] = samples.get(i);
+                }
+                Arrays.sort(sorted);
+                int rank = (int) Math.ceil(percentile / 100 * size) - 1;
+                thresholdNanos = Math.max(sorted[Math.max(0, Math.min(rank, size - 1))], minDelayNanos);
+            }
+        }
+
+        void deposit(double ratio, int maxBurst) {
+            long amount = (long) (ratio * TOKEN);
+            budget.accumulateAndGet(amount, (current, added) -> Math.min(current + added, maxBurst * TOKEN));
+        }
+
+        boolean withdraw() {
+            long current;
+            do {
+                current = budget.get();
+                if (current < TOKEN) {
+                    return false;
+                }
+            } while (!budget.compareAndSet(current, current - TOKEN));
+            return true;
+        }
+    }
+
+    private Counter hedgeCounter(Upstream upstream, String result) {
+        return Counter.builder("orders_upstream_hedges")
+                .description("Hedged upstream GETs: sent, won (answered first) and skipped over budget")
+                .tags("dependency", upstream.getTag(), "result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,126 @@
+package sockshop.orders.services;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+// Cache en lecture des ressources HAL (customer, address, card) par URI.
+// Les appels concurrents pour une même URI absente partagent le même appel amont.
+// Une entrée plus ancienne que revalidate-after est revalidée par If-None-Match si le service a fourni un ETag.
+@Component
+public class ResourceCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${orders.resource-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${orders.resource-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${orders.resource-cache.ttl:5m}")
+    private Duration ttl;
+
+    // 0 : pas de revalidation, l'entrée est servie jusqu'à expiration du TTL
+    @Value("${orders.resource-cache.revalidate-after:30s}")
+    private Duration revalidateAfter;
+
+    private AsyncCache<URI, CachedResource> cache;
+
+    private Counter notModified;
+    private Counter modified;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "upstream_resources");
+        notModified = revalidationCounter("not_modified");
+        modified = revalidationCounter("modified");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // fetcher : reçoit l'entrée à revalider (null pour un premier chargement) et renvoie la nouvelle entrée
+    public CompletableFuture<CachedResource> get(URI uri, Function<CachedResource, CompletableFuture<CachedResource>> fetcher) {
+        CompletableFuture<CachedResource> future = cache.get(uri, (key, executor) -> fetcher.apply(null));
+        CachedResource current = future.getNow(null);
+        if (current == null || !needsRevalidation(current)) {
+            return future;
+        }
+
+        // Une seule revalidation à la fois : le premier qui remplace l'entrée lance l'appel, les autres l'attendent
+        CompletableFuture<CachedResource> revalidation = new CompletableFuture<>();
+        if (!cache.asMap().replace(uri, future, revalidation)) {
+            return cache.get(uri, (key, executor) -> fetcher.apply(null));
+        }
+        fetcher.apply(current).whenComplete((resource, e) -> {
+            if (e != null) {
+                revalidation.completeExceptionally(e);
+            } else {
+                (resource.getBody() == current.getBody() ? notModified : modified).increment();
+                revalidation.complete(resource);
+            }
+        });
+        return revalidation;
+    }
+
+    private boolean needsRevalidation(CachedResource resource) {
+        return !revalidateAfter.isZero()
+                && resource.getEtag() != null
+                && System.nanoTime() - resource.getFetchedAt() > revalidateAfter.toNanos();
+    }
+
+    private Counter revalidationCounter(String result) {
+        return Counter.builder("orders_resource_cache_revalidations")
+                .description("ETag revalidations of cached upstream resources")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public static class CachedResource {
+        private final Object body;
+        private final String etag;
+        private final long fetchedAt;
+
+        public CachedResource(Object body, String etag) {
+            this.body = body;
+            this.etag = etag;
+            this.fetchedAt = System.nanoTime();
+        }
+
+        // Réponse 304 : même contenu, fraîcheur remise à zéro
+        public CachedResource revalidated() {
+            return new CachedResource(body, etag);
+        }
+
+        public Object getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+    }
+}
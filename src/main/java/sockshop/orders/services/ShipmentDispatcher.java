@@ -0,0 +1,258 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import sockshop.orders.config.OrdersConfigurationProperties;
+import sockshop.orders.entities.OutboxShipment;
+import sockshop.orders.entities.Shipment;
+import sockshop.orders.repositories.CustomerOrderRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Envoie au service shipping les expéditions en attente dans ShipmentOutbox.
+// Chaque passage réserve (findAndModify) jusqu'à batch-size expéditions dues, dans la limite de max-in-flight
+// envois simultanés. Une réservation vaut pour lease : si l'instance s'arrête, une autre reprend l'expédition.
+// Un échec est retenté avec un délai exponentiel, jusqu'à max-attempts tentatives (statut FAILED ensuite).
+// L'expédition confirmée par shipping remplace dans CustomerOrder l'expédition provisoire renvoyée par POST /orders.
+@Component
+public class ShipmentDispatcher {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AsyncGetService asyncGetService;
+
+    @Autowired
+    private OrdersConfigurationProperties config;
+
+    @Autowired
+    private ShipmentOutbox shipmentOutbox;
+
+    @Autowired
+    private CustomerOrderRepository customerOrderRepository;
+
+    @Autowired
+    private CustomerOrderCache customerOrderCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value(value = "${http.timeout:5}")
+    private long timeout;
+
+    @Value("${orders.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${orders.outbox.max-in-flight:16}")
+    private int maxInFlight;
+
+    @Value("${orders.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${orders.outbox.initial-backoff:1s}")
+    private Duration initialBackoff;
+
+    @Value("${orders.outbox.max-backoff:5m}")
+    private Duration maxBackoff;
+
+    @Value("${orders.outbox.lease:30s}")
+    private Duration lease;
+
+    // Les expéditions envoyées sont supprimées par Mongo (index TTL sur sentAt) après ce délai
+    @Value("${orders.outbox.sent-retention:7d}")
+    private Duration sentRetention;
+
+    private Semaphore inFlight;
+
+    private final AtomicLong depth = new AtomicLong();
+    private final AtomicLong oldestPendingAt = new AtomicLong();
+
+    private Counter sent;
+    private Counter retried;
+    private Counter failed;
+    private Timer deliveryDelay;
+
+    @PostConstruct
+    public void init() {
+        inFlight = new Semaphore(maxInFlight);
+        Gauge.builder("orders_outbox_depth", depth, AtomicLong::get)
+                .description("Shipments waiting in the outbox")
+                .register(meterRegistry);
+        Gauge.builder("orders_outbox_lag_seconds", oldestPendingAt,
+                        oldest -> oldest.get() == 0 ? 0 : (System.currentTimeMillis() - oldest.get()) / 1000.0)
+                .description("Age of the oldest shipment waiting in the outbox")
+                .register(meterRegistry);
+        Gauge.builder("orders_outbox_in_flight", inFlight, permits -> maxInFlight - permits.availablePermits())
+                .description("Shipments currently being sent")
+                .register(meterRegistry);
+        sent = dispatchCounter("sent");
+        retried = dispatchCounter("retried");
+        failed = dispatchCounter("failed");
+        deliveryDelay = Timer.builder("orders_outbox_delivery_delay")
+                .description("Time between order creation and shipment delivery to the shipping service")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        if (!shipmentOutbox.isEnabled()) {
+            return;
+        }
+        try {
+            IndexOperations indexOps = mongoTemplate.indexOps(OutboxShipment.class);
+            new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                    .resolveIndexFor(OutboxShipment.class)
+                    .forEach(indexOps::ensureIndex);
+            indexOps.ensureIndex(new Index().on("sentAt", Sort.Direction.ASC).named("sentAt_ttl").expire(sentRetention));
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to create indexes on ShipmentOutbox: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${orders.outbox.poll-interval:500ms}")
+    public void dispatch() {
+        if (!shipmentOutbox.isEnabled()) {
+            return;
+        }
+        try {
+            refreshBacklog();
+            int claimed = 0;
+            while (claimed < batchSize && inFlight.tryAcquire()) {
+                OutboxShipment record = claimNext();
+                if (record == null) {
+                    inFlight.release();
+                    break;
+                }
+                claimed++;
+                send(record);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Shipment outbox dispatch failed: {}", e.getMessage());
+        }
+    }
+
+    private OutboxShipment claimNext() {
+        Date now = new Date();
+        return mongoTemplate.findAndModify(
+                Query.query(where("status").is(OutboxShipment.PENDING).and("nextAttemptAt").lte(now))
+                        .with(Sort.by("nextAttemptAt")),
+                new Update().set("nextAttemptAt", new Date(now.getTime() + lease.toMillis())).inc("attempts", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                OutboxShipment.class);
+    }
+
+    private void send(OutboxShipment record) {
+        CompletableFuture<Shipment> shipment;
+        try {
+            shipment = asyncGetService.postResource(Upstream.SHIPPING, config.getShippingUri(), record.getShipment(),
+                    new ParameterizedTypeReference<Shipment>() {});
+        } catch (InterruptedException | IOException e) {
+            shipment = CompletableFuture.failedFuture(e);
+        }
+        shipment.orTimeout(timeout, TimeUnit.SECONDS).whenComplete((response, e) -> {
+            try {
+                if (e == null) {
+                    markSent(record, response);
+                } else {
+                    markFailed(record, e);
+                }
+            } catch (RuntimeException ex) {
+                // La réservation expirera et l'expédition sera reprise
+                LOG.warn("Unable to update outbox shipment {}: {}", record.getId(), ex.getMessage());
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void markSent(OutboxShipment record, Shipment response) {
+        if (response != null && response.getId() != null) {
+            writeBack(record, response);
+        }
+        Date now = new Date();
+        mongoTemplate.updateFirst(Query.query(where("_id").is(record.getId())),
+                new Update().set("status", OutboxShipment.SENT).set("sentAt", now).unset("lastError"),
+                OutboxShipment.class);
+        sent.increment();
+        deliveryDelay.record(now.getTime() - record.getCreatedAt().getTime(), TimeUnit.MILLISECONDS);
+        LOG.debug("Shipment sent for order {}", record.getOrderId());
+    }
+
+    // Avant de marquer l'envoi : si l'écriture échoue, la réservation expire et l'expédition est renvoyée
+    private void writeBack(OutboxShipment record, Shipment shipment) {
+        customerOrderRepository.updateShipment(record.getOrderId(), shipment);
+        // Expédition provisoire : name = customerId
+        if (record.getShipment() != null) {
+            customerOrderCache.changed(record.getShipment().getName());
+        }
+    }
+
+    private void markFailed(OutboxShipment record, Throwable e) {
+        String error = e.getCause() != null ? e.getCause().toString() : e.toString();
+        Update update = new Update().set("lastError", error);
+        if (record.getAttempts() >= maxAttempts) {
+            update.set("status", OutboxShipment.FAILED);
+            failed.increment();
+            LOG.error("Giving up shipment for order {} after {} attempts: {}", record.getOrderId(), record.getAttempts(), error);
+        } else {
+            update.set("nextAttemptAt", new Date(System.currentTimeMillis() + backoff(record.getAttempts())));
+            retried.increment();
+            LOG.warn("Shipment for order {} failed (attempt {}): {}", record.getOrderId(), record.getAttempts(), error);
+        }
+        mongoTemplate.updateFirst(Query.query(where("_id").is(record.getId())), update, OutboxShipment.class);
+    }
+
+    // Délai doublé à chaque tentative, plafonné à max-backoff, tiré entre la moitié et la totalité pour étaler les reprises
+    private long backoff(int attempts) {
+        long delay = Math.min(initialBackoff.toMillis() << Math.min(attempts - 1, 30), maxBackoff.toMillis());
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void refreshBacklog() {
+        Query pending = Query.query(where("status").is(OutboxShipment.PENDING));
+        depth.set(mongoTemplate.count(pending, OutboxShipment.class));
+        OutboxShipment oldest = mongoTemplate.findOne(Query.of(pending).with(Sort.by("createdAt")).limit(1),
+                OutboxShipment.class);
+        oldestPendingAt.set(oldest == null ? 0 : oldest.getCreatedAt().getTime());
+    }
+
+    private Counter dispatchCounter(String result) {
+        return Counter.builder("orders_outbox_dispatch")
+                .description("Shipment delivery attempts from the outbox")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
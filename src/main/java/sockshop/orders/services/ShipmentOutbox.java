@@ -0,0 +1,130 @@
+package sockshop.orders.services;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.entities.OutboxShipment;
+import sockshop.orders.repositories.CustomerOrderRepository;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// orders.shipping.dispatch=outbox : la commande et son expédition en attente sont écrites dans une même
+// transaction Mongo, la réponse part aussitôt et ShipmentDispatcher envoie l'expédition ensuite.
+// Les transactions demandent un replica set (ou un cluster shardé) : vérifié au démarrage.
+// orders.shipping.dispatch=sync : l'expédition est envoyée pendant la requête, avant l'enregistrement (comportement historique).
+@Component
+public class ShipmentOutbox {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CustomerOrderRepository customerOrderRepository;
+
+    @Autowired
+    private TransactionTemplate mongoTransactionTemplate;
+
+    // Pipeline réactif seulement (ReactivePipelineConfiguration)
+    @Autowired
+    private ObjectProvider<ReactiveMongoTemplate> reactiveMongoTemplate;
+
+    @Autowired
+    private ObjectProvider<TransactionalOperator> mongoTransactionalOperator;
+
+    @Value("${orders.shipping.dispatch:sync}")
+    private String dispatch;
+
+    public boolean isEnabled() {
+        return "outbox".equals(dispatch);
+    }
+
+    // Un mongod autonome refuse les transactions à la première commande : on préfère ne pas démarrer
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkTransactions() {
+        if (!isEnabled()) {
+            return;
+        }
+        Document hello;
+        try {
+            hello = mongoTemplate.getDb().runCommand(new Document("hello", 1));
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to check MongoDB transaction support for the shipment outbox: {}", e.getMessage());
+            return;
+        }
+        if (!hello.containsKey("setName") && !"isdbgrid".equals(hello.getString("msg"))) {
+            throw new IllegalStateException("orders.shipping.dispatch=outbox needs MongoDB transactions, "
+                    + "but the server is a standalone mongod: start it as a replica set (--replSet) "
+                    + "or set orders.shipping.dispatch=sync");
+        }
+    }
+
+    public CustomerOrder save(CustomerOrder order) {
+        return mongoTransactionTemplate.execute(status -> {
+            CustomerOrder savedOrder = customerOrderRepository.save(order);
+            enqueue(List.of(savedOrder));
+            return savedOrder;
+        });
+    }
+
+    public List<CustomerOrder> insertAll(List<CustomerOrder> orders) {
+        return mongoTransactionTemplate.execute(status -> {
+            List<CustomerOrder> savedOrders = customerOrderRepository.insert(orders);
+            enqueue(savedOrders);
+            return savedOrders;
+        });
+    }
+
+    // Pipeline réactif : même transaction par ReactiveMongoTemplate, sans bloquer de thread
+    public Mono<CustomerOrder> saveReactive(CustomerOrder order) {
+        ReactiveMongoTemplate template = reactiveMongoTemplate.getObject();
+        return mongoTransactionalOperator.getObject().transactional(template.save(order)
+                .flatMap(savedOrder -> {
+                    ReactiveBulkOperations bulk = template.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxShipment.class);
+                    bulk.upsert(Query.query(where("_id").is(savedOrder.getId())), pending(savedOrder, new Date()));
+                    return bulk.execute().thenReturn(savedOrder);
+                }));
+    }
+
+    // Une expédition par commande (_id = id de la commande) : réécrire une commande (repli du group commit ou du
+    // batch) ne crée pas de doublon et ne remet pas en attente une expédition déjà envoyée
+    private void enqueue(List<CustomerOrder> orders) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxShipment.class);
+        Date now = new Date();
+        for (CustomerOrder order : orders) {
+            bulk.upsert(Query.query(where("_id").is(order.getId())), pending(order, now));
+        }
+        bulk.execute();
+    }
+
+    private static Update pending(CustomerOrder order, Date now) {
+        return new Update()
+                .setOnInsert("orderId", order.getId())
+                .setOnInsert("shipment", order.getShipment())
+                .setOnInsert("status", OutboxShipment.PENDING)
+                .setOnInsert("attempts", 0)
+                .setOnInsert("createdAt", now)
+                .setOnInsert("nextAttemptAt", now);
+    }
+}
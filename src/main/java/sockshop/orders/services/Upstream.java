@@ -0,0 +1,37 @@
+package sockshop.orders.services;
+
+// Dépendances appelées par le service orders (utilisé comme tag des métriques)
+public enum Upstream {
+    ADDRESS("address", "users", true),
+    CUSTOMER("customer", "users", true),
+    CARD("card", "users", true),
+    ITEMS("items", "carts", false),
+    PAYMENT("payment", "payment", false),
+    SHIPPING("shipping", "shipping", false);
+
+    private final String tag;
+
+    // Service qui héberge la ressource : bulkhead et circuit breaker sont partagés par service
+    private final String service;
+
+    // Ressources qui changent rarement d'une commande à l'autre : servies par ResourceCache
+    private final boolean cacheable;
+
+    Upstream(String tag, String service, boolean cacheable) {
+        this.tag = tag;
+        this.service = service;
+        this.cacheable = cacheable;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+}
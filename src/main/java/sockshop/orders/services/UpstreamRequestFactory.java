@@ -0,0 +1,48 @@
+package sockshop.orders.services;
+
+import org.apache.hc.client5.http.classic.HttpClient;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.util.concurrent.TimeUnit;
+
+// Fabrique des requêtes d'AsyncGetService : chaque requête est annulable par la tentative de RequestHedging qui l'a
+// lancée, et ses timeouts (attente d'une connexion du pool, réponse) sont ramenés au temps restant de l'échéance.
+class UpstreamRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+    UpstreamRequestFactory(HttpClient httpClient) {
+        super(httpClient);
+    }
+
+    @Override
+    protected void postProcessHttpRequest(ClassicHttpRequest request) {
+        if (request instanceof Cancellable cancellable) {
+            RequestHedging.attachToCurrentAttempt(cancellable);
+        }
+    }
+
+    // Appelé à chaque requête avec la configuration par défaut du client (RestProxyTemplate)
+    @Override
+    protected RequestConfig mergeRequestConfig(RequestConfig clientConfig) {
+        RequestConfig config = super.mergeRequestConfig(clientConfig);
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return config;
+        }
+        long remainingMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos()));
+        return RequestConfig.copy(config)
+                .setConnectionRequestTimeout(cap(config.getConnectionRequestTimeout(), remainingMillis))
+                .setResponseTimeout(cap(config.getResponseTimeout(), remainingMillis))
+                .build();
+    }
+
+    private static Timeout cap(Timeout timeout, long remainingMillis) {
+        if (timeout == null || timeout.isDisabled() || timeout.toMilliseconds() > remainingMillis) {
+            return Timeout.ofMilliseconds(remainingMillis);
+        }
+        return timeout;
+    }
+}
@@ -0,0 +1,176 @@
+package sockshop.orders.services;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Bulkhead (nombre d'appels simultanés) et circuit breaker par service amont : users, carts, payment, shipping.
+// Quand un service ralentit ou échoue, ses appels sont refusés immédiatement (UpstreamUnavailableException)
+// au lieu d'occuper les threads de requête et du pool upstreamExecutor jusqu'au timeout.
+@Component
+public class UpstreamResilience {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${orders.resilience.max-concurrent-calls:64}")
+    private int defaultMaxConcurrentCalls;
+
+    @Value("${orders.resilience.failure-rate-threshold:50}")
+    private float failureRateThreshold;
+
+    @Value("${orders.resilience.slow-call-duration-threshold:2s}")
+    private Duration slowCallDurationThreshold;
+
+    @Value("${orders.resilience.slow-call-rate-threshold:80}")
+    private float slowCallRateThreshold;
+
+    @Value("${orders.resilience.sliding-window-size:50}")
+    private int slidingWindowSize;
+
+    @Value("${orders.resilience.minimum-number-of-calls:20}")
+    private int minimumNumberOfCalls;
+
+    @Value("${orders.resilience.wait-duration-in-open-state:10s}")
+    private Duration waitDurationInOpenState;
+
+    @Value("${orders.resilience.permitted-calls-in-half-open-state:5}")
+    private int permittedCallsInHalfOpenState;
+
+    private final Map<Upstream, CircuitBreaker> circuitBreakers = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Bulkhead> bulkheads = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Counter> circuitOpenRejections = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, Counter> bulkheadFullRejections = new EnumMap<>(Upstream.class);
+
+    @PostConstruct
+    public void init() {
+        // Les erreurs 4xx viennent de la requête, pas de l'état du service ; un bulkhead plein n'est pas un échec amont,
+        // pas plus qu'une requête annulée par RequestHedging ou coupée par l'échéance raccourcie d'un client
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallDurationThreshold)
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumNumberOfCalls)
+                .waitDurationInOpenState(waitDurationInOpenState)
+                .permittedNumberOfCallsInHalfOpenState(permittedCallsInHalfOpenState)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .ignoreExceptions(HttpClientErrorException.class, BulkheadFullException.class)
+                .ignoreException(e -> RequestHedging.isCurrentAttemptCancelled()
+                        || (e instanceof WebClientResponseException w && w.getStatusCode().is4xxClientError())
+                        || (e instanceof ResourceAccessException && Deadline.isCurrentRequestedByClientAndExpired()))
+                .build());
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+
+        for (Upstream upstream : Upstream.values()) {
+            String service = upstream.getService();
+            // Un seul circuit et un seul bulkhead par service : le registre renvoie la même instance pour un même nom
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(service);
+            Bulkhead bulkhead = bulkheadRegistry.bulkhead(service, BulkheadConfig.custom()
+                    .maxConcurrentCalls(environment.getProperty("orders.resilience." + service + ".max-concurrent-calls",
+                            Integer.class, defaultMaxConcurrentCalls))
+                    .maxWaitDuration(Duration.ZERO)
+                    .build());
+            circuitBreakers.put(upstream, circuitBreaker);
+            bulkheads.put(upstream, bulkhead);
+            circuitOpenRejections.put(upstream, rejectionCounter(service, "circuit_open"));
+            bulkheadFullRejections.put(upstream, rejectionCounter(service, "bulkhead_full"));
+        }
+
+        circuitBreakerRegistry.getAllCircuitBreakers().forEach(circuitBreaker ->
+                circuitBreaker.getEventPublisher().onStateTransition(event -> {
+                    LOG.warn("Circuit breaker {}: {}", event.getCircuitBreakerName(), event.getStateTransition());
+                    Counter.builder("orders_circuit_breaker_transitions")
+                            .description("Circuit breaker state transitions per upstream service")
+                            .tags("service", event.getCircuitBreakerName(),
+                                    "from", event.getStateTransition().getFromState().name().toLowerCase(),
+                                    "to", event.getStateTransition().getToState().name().toLowerCase())
+                            .register(meterRegistry)
+                            .increment();
+                }));
+
+        // État de chaque circuit, appels (réussis, échoués, lents, refusés) et places libres de chaque bulkhead
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+    }
+
+    public <T> T call(Upstream upstream, Supplier<T> call) {
+        // Circuit en premier : un circuit ouvert refuse l'appel sans prendre de place dans le bulkhead
+        Supplier<T> guarded = CircuitBreaker.decorateSupplier(circuitBreakers.get(upstream),
+                Bulkhead.decorateSupplier(bulkheads.get(upstream), call));
+        try {
+            return guarded.get();
+        } catch (CallNotPermittedException e) {
+            circuitOpenRejections.get(upstream).increment();
+            throw new UpstreamUnavailableException("Circuit open for " + upstream.getService() + " service", e);
+        } catch (BulkheadFullException e) {
+            bulkheadFullRejections.get(upstream).increment();
+            throw new UpstreamUnavailableException("Too many concurrent calls to " + upstream.getService() + " service", e);
+        }
+    }
+
+    // Même protection pour un appel non bloquant (ReactiveGetService) : permissions prises à l'abonnement,
+    // rendues à la fin ; un appel annulé (timeout de l'étape, autre lecture en échec) ne compte pas contre le service
+    public <T> Mono<T> call(Upstream upstream, Mono<T> call) {
+        return Mono.defer(() -> {
+            CircuitBreaker circuitBreaker = circuitBreakers.get(upstream);
+            Bulkhead bulkhead = bulkheads.get(upstream);
+            if (!circuitBreaker.tryAcquirePermission()) {
+                circuitOpenRejections.get(upstream).increment();
+                return Mono.error(new UpstreamUnavailableException("Circuit open for " + upstream.getService() + " service",
+                        CallNotPermittedException.createCallNotPermittedException(circuitBreaker)));
+            }
+            if (!bulkhead.tryAcquirePermission()) {
+                circuitBreaker.releasePermission();
+                bulkheadFullRejections.get(upstream).increment();
+                return Mono.error(new UpstreamUnavailableException(
+                        "Too many concurrent calls to " + upstream.getService() + " service",
+                        BulkheadFullException.createBulkheadFullException(bulkhead)));
+            }
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(body -> circuitBreaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(e -> circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e))
+                    .doOnCancel(circuitBreaker::releasePermission)
+                    .doFinally(signal -> bulkhead.onComplete());
+        });
+    }
+
+    private Counter rejectionCounter(String service, String reason) {
+        return Counter.builder("orders_upstream_rejections")
+                .description("Upstream calls rejected without being sent")
+                .tags("service", service, "reason", reason)
+                .register(meterRegistry);
+    }
+}
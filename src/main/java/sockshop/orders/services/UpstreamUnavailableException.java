@@ -0,0 +1,12 @@
+package sockshop.orders.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Appel refusé sans être envoyé : circuit ouvert ou bulkhead plein pour le service amont
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class UpstreamUnavailableException extends IllegalStateException {
+    public UpstreamUnavailableException(String s, Throwable cause) {
+        super(s, cause);
+    }
+}
@@ -0,0 +1,110 @@
+package sockshop.orders.test;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import sockshop.orders.services.OrderOutcomes;
+import sockshop.orders.services.OrderOutcomes.Outcome;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Injection de problèmes (latence, CPU, fuite mémoire...) partagée par les pipelines de commande
+@Component
+public class ProblemSimulator {
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    // Simulation config flags (set in application.properties)
+    @Value("${simulate.latency:false}")
+    private boolean simulateLatency;
+
+    @Value("${simulate.cpu:false}")
+    private boolean simulateCpu;
+
+    @Value("${simulate.leak:false}")
+    private boolean simulateLeak;
+
+    @Value("${simulate.thread:false}")
+    private boolean simulateThread;
+
+    @Value("${simulate.deadlock:false}")
+    private boolean simulateDeadlock;
+
+    @Value("${simulate.error:false}")
+    private boolean simulateError;
+
+    @Autowired
+    private OrderOutcomes orderOutcomes;
+
+    private static final List<byte[]> memoryLeakList = new CopyOnWriteArrayList<>();
+
+    public void simulateProblemsIfEnabled() throws InterruptedException {
+        if (simulateLatency) {
+            Thread.sleep(3000);
+            LOG.warn("🕒 Simulated latency (3s)");
+        }
+
+        if (simulateCpu) {
+            for (int i = 0; i < 5_000_000; i++) {
+                Math.log(Math.sqrt(i + 1));
+            }
+            LOG.warn("🔥 Simulated CPU spike");
+        }
+
+        if (simulateLeak) {
+            byte[] leak = new byte[10 * 1024 * 1024];
+            memoryLeakList.add(leak);
+            LOG.warn("💾 Simulated memory leak ({} blocks)", memoryLeakList.size());
+        }
+
+        if (simulateThread) {
+            new Thread(() -> {
+                while (true) {
+                    try { Thread.sleep(1000); } catch (InterruptedException ignored) {}
+                }
+            }).start();
+            LOG.warn("🧵 Simulated thread creation");
+        }
+
+        if (simulateDeadlock) {
+            final Object lock1 = new Object();
+            final Object lock2 = new Object();
+
+            Thread t1 = new Thread(() -> {
+                synchronized (lock1) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ignored) {}
+                    synchronized (lock2) {
+                        LOG.warn("🔒 Thread 1 acquired both locks");
+                    }
+                }
+            });
+
+            Thread t2 = new Thread(() -> {
+                synchronized (lock2) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ignored) {}
+                    synchronized (lock1) {
+                        LOG.warn("🔒 Thread 2 acquired both locks");
+                    }
+                }
+            });
+
+            t1.start();
+            t2.start();
+
+            LOG.warn("🔒 Simulated deadlock launched with 2 threads");
+        }
+
+        // New logic: Fail the 6th request when simulate.error is true
+        if (simulateError && orderOutcomes.total(Outcome.SUCCESS) >= 5) {
+            LOG.error("💥 Simulated error thrown (6th request or more)");
+            throw new RuntimeException("Simulated error: 6th request failed");
+        }
+    }
+}
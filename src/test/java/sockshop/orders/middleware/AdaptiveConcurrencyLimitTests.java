@@ -0,0 +1,110 @@
+package sockshop.orders.middleware;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTests {
+
+	private static final long MS = 1_000_000L;
+
+	// smoothing 1 : la nouvelle limite est prise telle quelle à la fin de chaque fenêtre
+	private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 5, 100, 2.0, 1.0, 0.9,
+			Duration.ofSeconds(10), Duration.ofSeconds(1));
+
+	private final long t0 = System.nanoTime();
+
+	@Test
+	void growsBySqrtOfLimitWhenLatencyStaysNearMinRtt() {
+		acquire(20);
+		for (int i = 0; i < 10; i++) {
+			limit.release(10 * MS, false, t0 + i * 12 * MS);
+		}
+
+		// 20 + sqrt(20)
+		assertThat(limit.getLimit()).isEqualTo(24);
+	}
+
+	@Test
+	void waitsForTenSamplesAndOneHundredMillisBeforeUpdating() {
+		acquire(20);
+		for (int i = 0; i < 10; i++) {
+			limit.release(10 * MS, false, t0 + i * 5 * MS);
+		}
+		assertThat(limit.getLimit()).isEqualTo(20);
+
+		limit.release(10 * MS, false, t0 + 100 * MS);
+		assertThat(limit.getLimit()).isEqualTo(24);
+	}
+
+	@Test
+	void shrinksWhenLatencyRisesAboveTolerance() {
+		acquire(20);
+		limit.release(10 * MS, false, t0);
+		for (int i = 1; i < 10; i++) {
+			limit.release(40 * MS, false, t0 + i * 12 * MS);
+		}
+
+		// gradient = 2 x 10 / 37 ; 20 x 0,54 + sqrt(20)
+		assertThat(limit.getLimit()).isEqualTo(15);
+	}
+
+	@Test
+	void backsOffOnDroppedRequest() {
+		acquire(20);
+		for (int i = 0; i < 10; i++) {
+			limit.release(10 * MS, i == 5, t0 + i * 12 * MS);
+		}
+
+		assertThat(limit.getLimit()).isEqualTo(18);
+	}
+
+	@Test
+	void doesNotGrowWhileUnderUsed() {
+		for (int i = 0; i < 10; i++) {
+			acquire(1);
+			limit.release(10 * MS, false, t0 + i * 12 * MS);
+		}
+
+		assertThat(limit.getLimit()).isEqualTo(20);
+	}
+
+	@Test
+	void halvesLimitWhileProbingStaleMinRtt() {
+		acquire(4);
+		limit.release(10 * MS, false, t0);
+
+		limit.release(20 * MS, false, t0 + 11_000 * MS);
+		assertThat(limit.getLimit()).isEqualTo(10);
+
+		limit.release(15 * MS, false, t0 + 11_500 * MS);
+		assertThat(limit.getLimit()).isEqualTo(10);
+
+		limit.release(30 * MS, false, t0 + 12_100 * MS);
+		assertThat(limit.getLimit()).isEqualTo(20);
+	}
+
+	@Test
+	void rejectsAboveLimitAndIgnoreFreesTheSlot() {
+		AdaptiveConcurrencyLimit small = new AdaptiveConcurrencyLimit(5, 5, 10, 2.0, 1.0, 0.9,
+				Duration.ofSeconds(10), Duration.ofSeconds(1));
+		for (int i = 0; i < 5; i++) {
+			assertThat(small.tryAcquire()).isTrue();
+		}
+		assertThat(small.tryAcquire()).isFalse();
+
+		small.ignore();
+
+		assertThat(small.getInFlight()).isEqualTo(4);
+		assertThat(small.tryAcquire()).isTrue();
+		assertThat(small.getLimit()).isEqualTo(5);
+	}
+
+	private void acquire(int n) {
+		for (int i = 0; i < n; i++) {
+			assertThat(limit.tryAcquire()).isTrue();
+		}
+	}
+}
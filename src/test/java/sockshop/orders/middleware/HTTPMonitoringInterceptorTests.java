@@ -0,0 +1,94 @@
+package sockshop.orders.middleware;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HTTPMonitoringInterceptorTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final HTTPMonitoringInterceptor interceptor = new HTTPMonitoringInterceptor(meterRegistry, 2);
+
+	@Test
+	void timesRequestsByRouteTemplate() {
+		handle("GET", "/orders/{id}", 200, null);
+		handle("GET", "/orders/{id}", 200, null);
+		handle("POST", "/orders", 201, null);
+
+		assertThat(timer("GET", "/orders/{id}", "2xx").count()).isEqualTo(2);
+		assertThat(timer("POST", "/orders", "2xx").count()).isEqualTo(1);
+	}
+
+	@Test
+	void routesBeyondMaxRoutesShareTheOtherSeries() {
+		handle("GET", "/orders/{id}", 200, null);
+		handle("POST", "/orders", 201, null);
+		handle("GET", "/orders/stats", 200, null);
+		handle("GET", "/orders/analytics", 200, null);
+		// Une route déjà connue garde sa série
+		handle("GET", "/orders/{id}", 200, null);
+
+		assertThat(timer("GET", HTTPMonitoringInterceptor.OTHER_ROUTE, "2xx").count()).isEqualTo(2);
+		assertThat(timer("GET", "/orders/{id}", "2xx").count()).isEqualTo(2);
+		assertThat(meterRegistry.find("http_server_requests_custom").tag("uri", "/orders/stats").timer()).isNull();
+	}
+
+	@Test
+	void requestsWithoutHandlerAreUnknown() {
+		handle("GET", null, 404, null);
+
+		assertThat(timer("GET", HTTPMonitoringInterceptor.UNKNOWN_ROUTE, "4xx").count()).isEqualTo(1);
+		assertThat(meterRegistry.get("http_errors_total").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void unresolvedExceptionIsTimedAsServerError() {
+		handle("POST", "/orders", 200, new IllegalStateException("boom"));
+
+		assertThat(timer("POST", "/orders", "5xx").count()).isEqualTo(1);
+		assertThat(meterRegistry.get("http_exceptions_total").tags("exception", "IllegalStateException", "uri", "/orders")
+				.counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void asyncDispatchIsCountedOnce() {
+		MockHttpServletRequest request = request("POST", "/orders");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, null);
+		request.setDispatcherType(DispatcherType.ASYNC);
+		interceptor.preHandle(request, response, null);
+		response.setStatus(201);
+		interceptor.afterCompletion(request, response, null, null);
+
+		assertThat(meterRegistry.get("http_requests_total").counter().count()).isEqualTo(1);
+		assertThat(timer("POST", "/orders", "2xx").count()).isEqualTo(1);
+	}
+
+	private void handle(String method, String route, int status, Exception ex) {
+		MockHttpServletRequest request = request(method, route);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, null);
+		response.setStatus(status);
+		interceptor.afterCompletion(request, response, null, ex);
+	}
+
+	private static MockHttpServletRequest request(String method, String route) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, "/");
+		if (route != null) {
+			request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, route);
+		}
+		return request;
+	}
+
+	private Timer timer(String method, String uri, String status) {
+		return meterRegistry.get("http_server_requests_custom").tags("method", method, "uri", uri, "status", status)
+				.timer();
+	}
+}
@@ -0,0 +1,117 @@
+package sockshop.orders.repositories;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import sockshop.orders.entities.CustomerOrder;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactOrderSchemaTests {
+
+	private final Date date = new Date(1_700_000_000_000L);
+
+	@Test
+	void compactsTheLegacyDocument() {
+		Document document = legacy();
+
+		CompactOrderSchema.compact(document);
+
+		assertThat(document).isEqualTo(new Document("_id", "order-1")
+				.append("v", 2)
+				.append("customerId", "customer-1")
+				.append("date", date)
+				.append("c", new Document("f", "Eve").append("l", "Berger").append("u", "eve"))
+				.append("a", new Document("n", "246").append("s", "Whitelees Road").append("c", "Glasgow")
+						.append("p", "G67 3DL").append("k", "United Kingdom"))
+				.append("k", new Document("n", "5544154011345918").append("e", "08/19"))
+				.append("i", List.of(new Document("i", "sock-1").append("q", 2).append("p", 999)))
+				.append("s", "shipment-1")
+				.append("t", 1998));
+	}
+
+	@Test
+	void expandsBackToTheFieldsAnOrderUses() {
+		Document document = legacy();
+
+		CompactOrderSchema.compact(document);
+		CompactOrderSchema.expand(document);
+
+		// Ni ids HAL des sous-objets, ni listes du client, ni cryptogramme, ni _class ; montants en double
+		assertThat(document).isEqualTo(new Document("_id", "order-1")
+				.append("customerId", "customer-1")
+				.append("date", date)
+				.append("customer", new Document("firstName", "Eve").append("lastName", "Berger")
+						.append("username", "eve").append("_id", "customer-1"))
+				.append("address", new Document("number", "246").append("street", "Whitelees Road")
+						.append("city", "Glasgow").append("postcode", "G67 3DL").append("country", "United Kingdom"))
+				.append("card", new Document("longNum", "5544154011345918").append("expires", "08/19"))
+				.append("items", List.of(new Document("itemId", "sock-1").append("quantity", 2).append("unitPrice", 9.99)))
+				.append("shipment", new Document("_id", "shipment-1").append("name", "customer-1"))
+				.append("total", 19.98));
+	}
+
+	@Test
+	void amountsAreStoredInMinorUnits() {
+		assertThat(CompactOrderSchema.toMinor(9.99F)).isEqualTo(999);
+		assertThat(CompactOrderSchema.toMinor(0.1F + 0.2F)).isEqualTo(30);
+		assertThat(CompactOrderSchema.toMinor(30_000_000.0)).isEqualTo(3_000_000_000L);
+		assertThat(CompactOrderSchema.toMinor(null)).isNull();
+		assertThat(CompactOrderSchema.fromMinor(3_000_000_000L)).isEqualTo(30_000_000.0);
+	}
+
+	@Test
+	void compactsOnSaveOnlyWhenEnabled() {
+		CompactOrderSchema schema = new CompactOrderSchema();
+		ReflectionTestUtils.setField(schema, "schema", "legacy");
+		Document legacy = legacy();
+		schema.onBeforeSave(new BeforeSaveEvent<>(new CustomerOrder(), legacy, "customerOrder"));
+		assertThat(legacy).containsKey("customer").doesNotContainKey("v");
+
+		ReflectionTestUtils.setField(schema, "schema", "compact");
+		Document compact = legacy();
+		schema.onBeforeSave(new BeforeSaveEvent<>(new CustomerOrder(), compact, "customerOrder"));
+		assertThat(compact).containsEntry("v", 2).doesNotContainKey("customer");
+	}
+
+	@Test
+	void expandsOnLoadOnlyCompactDocuments() {
+		CompactOrderSchema schema = new CompactOrderSchema();
+		ReflectionTestUtils.setField(schema, "schema", "legacy");
+
+		Document legacy = legacy();
+		schema.onAfterLoad(new AfterLoadEvent<>(legacy, CustomerOrder.class, "customerOrder"));
+		assertThat(legacy).isEqualTo(legacy());
+
+		Document compact = legacy();
+		CompactOrderSchema.compact(compact);
+		schema.onAfterLoad(new AfterLoadEvent<>(compact, CustomerOrder.class, "customerOrder"));
+		assertThat(compact).containsKey("customer").doesNotContainKey("v");
+	}
+
+	// Document tel qu'écrit par MappingMongoConverter
+	private Document legacy() {
+		return new Document("_id", "order-1")
+				.append("customerId", "customer-1")
+				.append("customer", new Document("_id", "customer-1").append("firstName", "Eve")
+						.append("lastName", "Berger").append("username", "eve")
+						.append("addresses", List.of()).append("cards", List.of()))
+				.append("address", new Document("_id", "address-1").append("number", "246")
+						.append("street", "Whitelees Road").append("city", "Glasgow")
+						.append("postcode", "G67 3DL").append("country", "United Kingdom"))
+				.append("card", new Document("_id", "card-1").append("longNum", "5544154011345918")
+						.append("expires", "08/19").append("ccv", "958"))
+				.append("items", List.of(new Document("_id", "item-1").append("itemId", "sock-1")
+						.append("quantity", 2).append("unitPrice", 9.99F)))
+				.append("shipment", new Document("_id", "shipment-1").append("name", "customer-1"))
+				.append("date", date)
+				.append("total", 19.98F)
+				.append("_class", "sockshop.orders.entities.CustomerOrder");
+	}
+}
@@ -0,0 +1,93 @@
+package sockshop.orders.repositories;
+
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import sockshop.orders.entities.CustomerOrder;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerOrderIndexesTests {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+	@SuppressWarnings("unchecked")
+	private final MongoCollection<Document> orders = mock(MongoCollection.class);
+
+	@SuppressWarnings("unchecked")
+	private final FindIterable<Document> find = mock(FindIterable.class);
+
+	@SuppressWarnings("unchecked")
+	private final AggregateIterable<Document> aggregate = mock(AggregateIterable.class);
+
+	private final CustomerOrderIndexes indexes = new CustomerOrderIndexes();
+
+	@BeforeEach
+	void setUp() {
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+		converter.afterPropertiesSet();
+		when(mongoTemplate.getConverter()).thenReturn(converter);
+		when(mongoTemplate.getCollectionName(CustomerOrder.class)).thenReturn("CustomerOrder");
+		when(mongoTemplate.getCollection("CustomerOrder")).thenReturn(orders);
+		when(orders.find(any(Bson.class))).thenReturn(find);
+		when(find.sort(any())).thenReturn(find);
+		when(find.limit(1)).thenReturn(find);
+		when(find.explain()).thenReturn(new Document("queryPlanner", new Document("winningPlan",
+				new Document("stage", "FETCH").append("inputStage", new Document("stage", "IXSCAN")))));
+		when(orders.aggregate(anyList())).thenReturn(aggregate);
+		// Format de explain d'une agrégation dont seul le $match passe par le moteur de requête
+		when(aggregate.explain()).thenReturn(new Document("stages", List.of(new Document("$cursor",
+				new Document("queryPlanner", new Document("winningPlan", new Document("stage", "COLLSCAN")))))));
+		ReflectionTestUtils.setField(indexes, "mongoTemplate", mongoTemplate);
+	}
+
+	@Test
+	void explainsTheRepositoryQueries() {
+		Map<String, String> plans = indexes.verifyQueryPlans();
+
+		assertThat(plans).containsOnlyKeys("findByCustomerId", "findPageAfter/streamAfter",
+				"findSummariesAfter(customerId)", "findBuckets");
+		assertThat(plans.get("findPageAfter/streamAfter")).isEqualTo("FETCH <- IXSCAN");
+		assertThat(plans.get("findBuckets")).isEqualTo("COLLSCAN");
+	}
+
+	@Test
+	void keysetQueriesAreMappedLikeMongoTemplate() {
+		indexes.verifyQueryPlans();
+
+		ArgumentCaptor<Bson> filters = ArgumentCaptor.forClass(Bson.class);
+		ArgumentCaptor<Bson> sorts = ArgumentCaptor.forClass(Bson.class);
+		verify(orders, times(3)).find(filters.capture());
+		verify(find, times(3)).sort(sorts.capture());
+
+		assertThat(filters.getAllValues().get(0)).isEqualTo(new Document("customerId", ""));
+		assertThat((Document) sorts.getAllValues().get(0)).isEmpty();
+		// _id > after, trié sur _id : l'id en chaîne devient un ObjectId
+		Document keyset = (Document) filters.getAllValues().get(1);
+		assertThat(keyset.get("_id", Document.class).get("$gt")).isInstanceOf(ObjectId.class);
+		assertThat(sorts.getAllValues().get(1)).isEqualTo(new Document("_id", 1));
+		verify(find).limit(1);
+	}
+}
@@ -0,0 +1,95 @@
+package sockshop.orders.repositories;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import sockshop.orders.resources.OrderBucket;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderRollupTests {
+
+	private final Date first = new Date(1_700_000_000_000L);
+	private final Date second = new Date(1_700_003_600_000L);
+
+	@Test
+	void backfillRunsOffTheSchedulerThread() throws Exception {
+		MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> threads = new CopyOnWriteArrayList<>();
+		when(mongoTemplate.getCollection(OrderRollup.STATE)).thenAnswer(invocation -> {
+			threads.add(Thread.currentThread().getName());
+			release.await(5, TimeUnit.SECONDS);
+			throw new IllegalStateException("mongo down");
+		});
+		OrderRollup rollup = new OrderRollup();
+		ReflectionTestUtils.setField(rollup, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(rollup, "enabled", true);
+		rollup.init();
+		try {
+			rollup.backfillWhenDue();
+			// Calcul en cours : pas de second calcul en parallèle
+			rollup.backfillWhenDue();
+			release.countDown();
+
+			verify(mongoTemplate, timeout(5000)).getCollection(OrderRollup.STATE);
+			assertThat(threads).containsExactly("orders-rollup-backfill");
+		} finally {
+			rollup.shutdown();
+		}
+	}
+
+	@Test
+	void bucketsKeepTheOrderOfTheTotals() {
+		List<OrderBucket> buckets = OrderRollup.buckets(List.of(
+				new Document("_id", first).append("orders", 3).append("revenue", 2997L),
+				new Document("_id", second).append("orders", 1L).append("revenue", 1050)), List.of());
+
+		assertThat(buckets).extracting(OrderBucket::getStart).containsExactly(first, second);
+		assertThat(buckets).extracting(OrderBucket::getOrders).containsExactly(3L, 1L);
+		// Centimes -> unités
+		assertThat(buckets).extracting(OrderBucket::getRevenue).containsExactly(29.97, 10.5);
+		assertThat(buckets).allSatisfy(bucket -> assertThat(bucket.getTopItems()).isEmpty());
+	}
+
+	@Test
+	void topItemsAreAttachedToTheirBucket() {
+		List<OrderBucket> buckets = OrderRollup.buckets(List.of(
+				new Document("_id", first).append("orders", 3).append("revenue", 2997L),
+				new Document("_id", second).append("orders", 1).append("revenue", 1050L)), List.of(
+				new Document("_id", second).append("top", List.of(
+						new Document("itemId", "sock-2").append("quantity", 4))),
+				new Document("_id", first).append("top", List.of(
+						new Document("itemId", "sock-1").append("quantity", 5L),
+						new Document("itemId", "sock-3").append("quantity", 1)))));
+
+		assertThat(buckets.get(0).getTopItems()).extracting("itemId", "quantity")
+				.containsExactly(tuple("sock-1", 5L), tuple("sock-3", 1L));
+		assertThat(buckets.get(1).getTopItems()).extracting("itemId", "quantity")
+				.containsExactly(tuple("sock-2", 4L));
+	}
+
+	@Test
+	void itemsWithoutTotalsAreDropped() {
+		List<OrderBucket> buckets = OrderRollup.buckets(List.of(
+				new Document("_id", first).append("orders", 1).append("revenue", 100L)), List.of(
+				new Document("_id", second).append("top", List.of(
+						new Document("itemId", "sock-2").append("quantity", 4)))));
+
+		assertThat(buckets).hasSize(1);
+		assertThat(buckets.get(0).getTopItems()).isEmpty();
+	}
+}
@@ -0,0 +1,108 @@
+package sockshop.orders.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeadlineTests {
+
+	private static final long MS = 1_000_000L;
+
+	@Test
+	void clientCanShortenTheBudget() {
+		Deadline deadline = Deadline.after(Duration.ofSeconds(5), 1000L, Duration.ofMillis(200));
+		long remaining = deadline.remainingNanos();
+
+		assertThat(deadline.isRequestedByClient()).isTrue();
+		assertThat(remaining).isBetween(500 * MS, 1000 * MS);
+	}
+
+	@Test
+	void clientBudgetHasAFloor() {
+		Deadline deadline = Deadline.after(Duration.ofSeconds(5), 10L, Duration.ofMillis(200));
+		long remaining = deadline.remainingNanos();
+
+		assertThat(remaining).isBetween(10 * MS, 200 * MS);
+	}
+
+	@Test
+	void clientCannotExtendTheBudget() {
+		for (Long requested : new Long[]{null, 0L, 5000L, 60_000L}) {
+			Deadline deadline = Deadline.after(Duration.ofSeconds(5), requested, Duration.ofMillis(200));
+			long remaining = deadline.remainingNanos();
+
+			assertThat(deadline.isRequestedByClient()).isFalse();
+			assertThat(remaining).isBetween(1000 * MS, 5000 * MS);
+		}
+	}
+
+	@Test
+	void bindRestoresThePreviousDeadline() {
+		Deadline outer = Deadline.after(Duration.ofSeconds(5));
+		Deadline inner = Deadline.after(Duration.ofSeconds(1));
+
+		try (Deadline.Scope o = outer.bind()) {
+			try (Deadline.Scope i = inner.bind()) {
+				assertThat(Deadline.current()).isSameAs(inner);
+			}
+			assertThat(Deadline.current()).isSameAs(outer);
+
+			try (Deadline.Scope s = Deadline.suspend()) {
+				assertThat(Deadline.current()).isNull();
+			}
+			assertThat(Deadline.current()).isSameAs(outer);
+		}
+		assertThat(Deadline.current()).isNull();
+	}
+
+	@Test
+	void remainingNanosIsCappedByTheCurrentDeadline() {
+		assertThat(Deadline.remainingNanos(3000 * MS)).isEqualTo(3000 * MS);
+
+		try (Deadline.Scope scope = Deadline.after(Duration.ofSeconds(1)).bind()) {
+			assertThat(Deadline.remainingNanos(3000 * MS)).isLessThanOrEqualTo(1000 * MS);
+			assertThat(Deadline.remainingNanos(10 * MS)).isEqualTo(10 * MS);
+		}
+	}
+
+	@Test
+	void wrapCarriesTheDeadlineToAnotherThread() throws Exception {
+		Deadline deadline = Deadline.after(Duration.ofSeconds(1));
+		CompletableFuture<Deadline> seen = new CompletableFuture<>();
+
+		Runnable task;
+		try (Deadline.Scope scope = deadline.bind()) {
+			task = Deadline.wrap(() -> seen.complete(Deadline.current()));
+		}
+		Thread thread = new Thread(task);
+		thread.start();
+		thread.join();
+
+		assertThat(seen.get(1, TimeUnit.SECONDS)).isSameAs(deadline);
+	}
+
+	@Test
+	void wrapWithoutDeadlineReturnsTheTask() {
+		Runnable task = () -> {
+		};
+
+		assertThat(Deadline.wrap(task)).isSameAs(task);
+	}
+
+	@Test
+	void expiredClientDeadlineIsReported() throws Exception {
+		Deadline deadline = Deadline.after(Duration.ofSeconds(5), 1L, Duration.ZERO);
+		Thread.sleep(5);
+
+		try (Deadline.Scope scope = deadline.bind()) {
+			assertThat(Deadline.isCurrentRequestedByClientAndExpired()).isTrue();
+			assertThatThrownBy(() -> Deadline.checkCurrent("payment")).isInstanceOf(DeadlineExceededException.class);
+		}
+		assertThat(Deadline.isCurrentRequestedByClientAndExpired()).isFalse();
+	}
+}
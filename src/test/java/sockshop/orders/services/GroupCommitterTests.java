@@ -0,0 +1,106 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GroupCommitterTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final DistributionSummary batchSizes = meterRegistry.summary("batch_size");
+	private final Timer commits = meterRegistry.timer("commits");
+
+	private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+	private GroupCommitter<String> committer;
+
+	@AfterEach
+	void stop() {
+		if (committer != null) {
+			committer.stop();
+		}
+	}
+
+	@Test
+	void writesItemsSubmittedWithinTheWindowTogether() throws Exception {
+		committer = committer(Duration.ofMillis(200), 64, this::upperCase, String::toUpperCase);
+
+		CompletableFuture<String> a = committer.submit("a");
+		CompletableFuture<String> b = committer.submit("b");
+		CompletableFuture<String> c = committer.submit("c");
+
+		assertThat(a.get(5, TimeUnit.SECONDS)).isEqualTo("A");
+		assertThat(b.get(5, TimeUnit.SECONDS)).isEqualTo("B");
+		assertThat(c.get(5, TimeUnit.SECONDS)).isEqualTo("C");
+		assertThat(batches).containsExactly(List.of("a", "b", "c"));
+		assertThat(batchSizes.count()).isEqualTo(1);
+		assertThat(batchSizes.totalAmount()).isEqualTo(3);
+	}
+
+	@Test
+	void closesTheBatchAtMaxBatchSize() throws Exception {
+		committer = committer(Duration.ofSeconds(2), 2, this::upperCase, String::toUpperCase);
+
+		CompletableFuture<String> a = committer.submit("a");
+		CompletableFuture<String> b = committer.submit("b");
+
+		// Lot plein : parti sans attendre la fin de la fenêtre de 2 s
+		assertThat(a.get(1, TimeUnit.SECONDS)).isEqualTo("A");
+		assertThat(b.get(1, TimeUnit.SECONDS)).isEqualTo("B");
+		assertThat(batches).containsExactly(List.of("a", "b"));
+	}
+
+	@Test
+	void rewritesEachItemAloneWhenTheBatchFails() throws Exception {
+		committer = committer(Duration.ofMillis(200), 64, items -> {
+			throw new IllegalStateException("batch failed");
+		}, item -> {
+			if (item.equals("bad")) {
+				throw new IllegalStateException("bad item");
+			}
+			return item.toUpperCase();
+		});
+
+		CompletableFuture<String> a = committer.submit("a");
+		CompletableFuture<String> bad = committer.submit("bad");
+		CompletableFuture<String> c = committer.submit("c");
+
+		assertThat(a.get(5, TimeUnit.SECONDS)).isEqualTo("A");
+		assertThat(c.get(5, TimeUnit.SECONDS)).isEqualTo("C");
+		assertThatThrownBy(() -> bad.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class)
+				.hasRootCauseMessage("bad item");
+		assertThat(batchSizes.count()).isEqualTo(2);
+	}
+
+	@Test
+	void rejectsItemsOnceStopped() {
+		committer = committer(Duration.ofMillis(1), 64, this::upperCase, String::toUpperCase);
+		committer.stop();
+
+		assertThat(committer.submit("a")).isCompletedExceptionally();
+	}
+
+	private GroupCommitter<String> committer(Duration window, int maxBatchSize,
+											 Function<List<String>, List<String>> batchWriter,
+											 Function<String, String> singleWriter) {
+		return new GroupCommitter<>("test-group-commit", batchWriter, singleWriter, window, maxBatchSize, 16,
+				batchSizes, commits);
+	}
+
+	private List<String> upperCase(List<String> items) {
+		batches.add(List.copyOf(items));
+		return items.stream().map(String::toUpperCase).toList();
+	}
+}
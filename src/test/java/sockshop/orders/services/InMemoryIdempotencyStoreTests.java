@@ -0,0 +1,202 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import sockshop.orders.entities.CustomerOrder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryIdempotencyStoreTests {
+
+	private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore();
+
+	private final AtomicInteger executions = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(store, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(store, "ttl", Duration.ofHours(1));
+		ReflectionTestUtils.setField(store, "maximumSize", 100L);
+		ReflectionTestUtils.setField(store, "waitTimeout", Duration.ofMillis(200));
+		store.init();
+	}
+
+	@Test
+	void replaysTheFirstOrderForTheSameKey() {
+		CustomerOrder first = store.execute("key", "fp", () -> order("1"));
+		CustomerOrder second = store.execute("key", "fp", () -> order("2"));
+
+		assertThat(second).isSameAs(first);
+		assertThat(executions.get()).isEqualTo(1);
+	}
+
+	@Test
+	void duplicateWaitsForTheFirstAttempt() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<CustomerOrder> first = CompletableFuture.supplyAsync(() -> store.execute("key", "fp", () -> {
+			started.countDown();
+			await(release);
+			return order("1");
+		}));
+		started.await(5, TimeUnit.SECONDS);
+
+		CompletableFuture<CustomerOrder> duplicate = CompletableFuture.supplyAsync(
+				() -> store.execute("key", "fp", () -> order("2")));
+		release.countDown();
+
+		assertThat(duplicate.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+		assertThat(executions.get()).isEqualTo(1);
+	}
+
+	@Test
+	void duplicateGets409WhileTheFirstAttemptIsStillRunning() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture.runAsync(() -> store.execute("key", "fp", () -> {
+			started.countDown();
+			await(release);
+			return order("1");
+		}));
+		started.await(5, TimeUnit.SECONDS);
+
+		try {
+			assertThatThrownBy(() -> store.execute("key", "fp", () -> order("2")))
+					.isInstanceOfSatisfying(ResponseStatusException.class,
+							e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	void rejectsTheSameKeyWithAnotherRequest() {
+		store.execute("key", "fp", () -> order("1"));
+
+		assertThatThrownBy(() -> store.execute("key", "other", () -> order("2")))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+	}
+
+	@Test
+	void failedAttemptReleasesTheKey() {
+		assertThatThrownBy(() -> store.execute("key", "fp", () -> {
+			throw new IllegalStateException("payment service down");
+		})).isInstanceOf(IllegalStateException.class);
+
+		CustomerOrder retried = store.execute("key", "fp", () -> order("1"));
+
+		assertThat(retried.getId()).isEqualTo("1");
+	}
+
+	@Test
+	void keepsTheKeyWhileASaveMayStillLand() {
+		CompletableFuture<CustomerOrder> saved = new CompletableFuture<>();
+		assertThatThrownBy(() -> store.execute("key", "fp", () -> {
+			throw new OrderSaveInProgressException("still saving", saved);
+		})).isInstanceOf(OrderSaveInProgressException.class);
+
+		CustomerOrder late = order("1");
+		saved.complete(late);
+
+		assertThat(store.execute("key", "fp", () -> order("2"))).isSameAs(late);
+	}
+
+	@Test
+	void releasesTheKeyWhenTheLateSaveFails() {
+		CompletableFuture<CustomerOrder> saved = new CompletableFuture<>();
+		assertThatThrownBy(() -> store.execute("key", "fp", () -> {
+			throw new OrderSaveInProgressException("still saving", saved);
+		})).isInstanceOf(OrderSaveInProgressException.class);
+
+		saved.completeExceptionally(new IllegalStateException("write failed"));
+
+		assertThat(store.execute("key", "fp", () -> order("2")).getId()).isEqualTo("2");
+	}
+
+	@Test
+	void reactiveDuplicateWaitsForTheFirstAttempt() {
+		CompletableFuture<CustomerOrder> payment = new CompletableFuture<>();
+		Mono<CustomerOrder> first = store.executeReactive("key", "fp", () -> Mono.fromFuture(payment).map(p -> order("1")))
+				.cache();
+		first.subscribe();
+
+		Mono<CustomerOrder> duplicate = store.executeReactive("key", "fp", () -> Mono.fromCallable(() -> order("2")));
+		payment.complete(new CustomerOrder());
+
+		assertThat(duplicate.block(Duration.ofSeconds(5))).isSameAs(first.block(Duration.ofSeconds(5)));
+		assertThat(executions.get()).isEqualTo(1);
+	}
+
+	@Test
+	void reactiveDuplicateGets409WhileTheFirstAttemptIsStillRunning() {
+		store.executeReactive("key", "fp", Mono::never).subscribe();
+
+		assertThatThrownBy(() -> store.executeReactive("key", "fp", () -> Mono.fromCallable(() -> order("2"))).block())
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+		assertThat(executions.get()).isZero();
+	}
+
+	@Test
+	void reactiveRejectsTheSameKeyWithAnotherRequest() {
+		store.executeReactive("key", "fp", () -> Mono.fromCallable(() -> order("1"))).block();
+
+		assertThatThrownBy(() -> store.executeReactive("key", "other", () -> Mono.fromCallable(() -> order("2"))).block())
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+	}
+
+	@Test
+	void reactiveFailedOrCancelledAttemptReleasesTheKey() {
+		assertThatThrownBy(() -> store.executeReactive("key", "fp",
+				() -> Mono.<CustomerOrder>error(new IllegalStateException("payment service down"))).block())
+				.isInstanceOf(IllegalStateException.class);
+		store.executeReactive("key", "fp", Mono::never).subscribe().dispose();
+
+		CustomerOrder retried = store.executeReactive("key", "fp", () -> Mono.fromCallable(() -> order("1"))).block();
+
+		assertThat(retried.getId()).isEqualTo("1");
+	}
+
+	@Test
+	void reactiveKeepsTheKeyWhileASaveMayStillLand() {
+		CompletableFuture<CustomerOrder> saved = new CompletableFuture<>();
+		assertThatThrownBy(() -> store.executeReactive("key", "fp",
+				() -> Mono.<CustomerOrder>error(new OrderSaveInProgressException("still saving", saved))).block())
+				.isInstanceOf(OrderSaveInProgressException.class);
+
+		CustomerOrder late = order("1");
+		saved.complete(late);
+
+		assertThat(store.executeReactive("key", "fp", () -> Mono.fromCallable(() -> order("2"))).block()).isSameAs(late);
+	}
+
+	private CustomerOrder order(String id) {
+		executions.incrementAndGet();
+		CustomerOrder order = new CustomerOrder();
+		order.setId(id);
+		return order;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package sockshop.orders.services;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.entities.IdempotencyRecord;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MongoIdempotencyStoreTests {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+	private final ReactiveMongoTemplate reactiveMongoTemplate = mock(ReactiveMongoTemplate.class);
+
+	private final MongoIdempotencyStore store = new MongoIdempotencyStore();
+
+	private final AtomicInteger executions = new AtomicInteger();
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		ReflectionTestUtils.setField(store, "mongoTemplate", mongoTemplate);
+		ObjectProvider<ReactiveMongoTemplate> reactive = mock(ObjectProvider.class);
+		when(reactive.getObject()).thenReturn(reactiveMongoTemplate);
+		ReflectionTestUtils.setField(store, "reactiveMongoTemplate", reactive);
+		ReflectionTestUtils.setField(store, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(store, "ttl", Duration.ofHours(1));
+		ReflectionTestUtils.setField(store, "waitTimeout", Duration.ofMillis(100));
+		ReflectionTestUtils.setField(store, "pendingTimeout", Duration.ofMinutes(1));
+		ReflectionTestUtils.setField(store, "pollInterval", Duration.ofMillis(10));
+		store.init();
+	}
+
+	@Test
+	void firstAttemptRunsAndMarksTheKeyDone() {
+		CustomerOrder order = store.execute("key", "fp", () -> order("1"));
+
+		assertThat(order.getId()).isEqualTo("1");
+		verify(mongoTemplate).insert(any(IdempotencyRecord.class));
+		verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+	}
+
+	@Test
+	void replaysTheOrderOfADoneKey() {
+		keyTaken(record("fp", IdempotencyRecord.DONE, new Date()));
+		CustomerOrder saved = new CustomerOrder();
+		saved.setId("1");
+		when(mongoTemplate.findOne(any(Query.class), eq(CustomerOrder.class))).thenReturn(saved);
+
+		CustomerOrder order = store.execute("key", "fp", () -> order("2"));
+
+		assertThat(order).isSameAs(saved);
+		assertThat(executions.get()).isZero();
+	}
+
+	@Test
+	void duplicateGets409WhileTheKeyIsPending() {
+		keyTaken(record("fp", IdempotencyRecord.PENDING, new Date()));
+
+		assertThatThrownBy(() -> store.execute("key", "fp", () -> order("2")))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+		assertThat(executions.get()).isZero();
+	}
+
+	@Test
+	void rejectsTheSameKeyWithAnotherRequest() {
+		keyTaken(record("fp", IdempotencyRecord.DONE, new Date()));
+
+		assertThatThrownBy(() -> store.execute("key", "other", () -> order("2")))
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+	}
+
+	@Test
+	void acceptsRecordsWithoutFingerprint() {
+		keyTaken(record(null, IdempotencyRecord.DONE, new Date()));
+		CustomerOrder saved = new CustomerOrder();
+		when(mongoTemplate.findOne(any(Query.class), eq(CustomerOrder.class))).thenReturn(saved);
+
+		assertThat(store.execute("key", "fp", () -> order("2"))).isSameAs(saved);
+	}
+
+	@Test
+	void failedAttemptReleasesTheKey() {
+		assertThatThrownBy(() -> store.execute("key", "fp", () -> {
+			throw new IllegalStateException("payment service down");
+		})).isInstanceOf(IllegalStateException.class);
+
+		verify(mongoTemplate).remove(any(Query.class), eq(IdempotencyRecord.class));
+		verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+	}
+
+	@Test
+	void keepsTheKeyPendingWhileASaveMayStillLand() {
+		CompletableFuture<CustomerOrder> saved = new CompletableFuture<>();
+		assertThatThrownBy(() -> store.execute("key", "fp", () -> {
+			throw new OrderSaveInProgressException("still saving", saved);
+		})).isInstanceOf(OrderSaveInProgressException.class);
+		verify(mongoTemplate, never()).remove(any(Query.class), eq(IdempotencyRecord.class));
+
+		saved.complete(order("1"));
+
+		verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+	}
+
+	@Test
+	void takesOverAnAbandonedPendingKey() {
+		when(mongoTemplate.insert(any(IdempotencyRecord.class)))
+				.thenThrow(new DuplicateKeyException("IdempotencyKey"))
+				.thenReturn(null);
+		when(mongoTemplate.findOne(any(Query.class), eq(IdempotencyRecord.class)))
+				.thenReturn(record("fp", IdempotencyRecord.PENDING, new Date(System.currentTimeMillis() - 120_000)));
+
+		CustomerOrder order = store.execute("key", "fp", () -> order("1"));
+
+		assertThat(order.getId()).isEqualTo("1");
+		verify(mongoTemplate).remove(any(Query.class), eq(IdempotencyRecord.class));
+	}
+
+	@Test
+	void reactiveFirstAttemptRunsAndMarksTheKeyDone() {
+		when(reactiveMongoTemplate.insert(any(IdempotencyRecord.class)))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		when(reactiveMongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class)))
+				.thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+		CustomerOrder order = store.executeReactive("key", "fp", () -> Mono.fromCallable(() -> order("1"))).block();
+
+		assertThat(order.getId()).isEqualTo("1");
+		verify(reactiveMongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+		verify(mongoTemplate, never()).insert(any(IdempotencyRecord.class));
+	}
+
+	@Test
+	void reactiveReplaysTheOrderOfADoneKey() {
+		reactiveKeyTaken(record("fp", IdempotencyRecord.DONE, new Date()));
+		CustomerOrder saved = new CustomerOrder();
+		when(reactiveMongoTemplate.findOne(any(Query.class), eq(CustomerOrder.class))).thenReturn(Mono.just(saved));
+
+		CustomerOrder order = store.executeReactive("key", "fp", () -> Mono.fromCallable(() -> order("2"))).block();
+
+		assertThat(order).isSameAs(saved);
+		assertThat(executions.get()).isZero();
+	}
+
+	@Test
+	void reactiveDuplicateGets409WhileTheKeyIsPending() {
+		reactiveKeyTaken(record("fp", IdempotencyRecord.PENDING, new Date()));
+
+		assertThatThrownBy(() -> store.executeReactive("key", "fp", () -> Mono.fromCallable(() -> order("2"))).block())
+				.isInstanceOfSatisfying(ResponseStatusException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+		assertThat(executions.get()).isZero();
+	}
+
+	@Test
+	void reactiveFailedAttemptReleasesTheKey() {
+		when(reactiveMongoTemplate.insert(any(IdempotencyRecord.class)))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		when(reactiveMongoTemplate.remove(any(Query.class), eq(IdempotencyRecord.class)))
+				.thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+
+		assertThatThrownBy(() -> store.executeReactive("key", "fp",
+				() -> Mono.<CustomerOrder>error(new IllegalStateException("payment service down"))).block())
+				.isInstanceOf(IllegalStateException.class);
+
+		verify(reactiveMongoTemplate).remove(any(Query.class), eq(IdempotencyRecord.class));
+		verify(reactiveMongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+	}
+
+	private void reactiveKeyTaken(IdempotencyRecord record) {
+		when(reactiveMongoTemplate.insert(any(IdempotencyRecord.class)))
+				.thenReturn(Mono.error(new DuplicateKeyException("IdempotencyKey")));
+		when(reactiveMongoTemplate.findOne(any(Query.class), eq(IdempotencyRecord.class))).thenReturn(Mono.just(record));
+	}
+
+	private void keyTaken(IdempotencyRecord record) {
+		when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("IdempotencyKey"));
+		when(mongoTemplate.findOne(any(Query.class), eq(IdempotencyRecord.class))).thenReturn(record);
+	}
+
+	private static IdempotencyRecord record(String fingerprint, String status, Date createdAt) {
+		IdempotencyRecord record = new IdempotencyRecord("key", fingerprint);
+		record.setStatus(status);
+		record.setOrderId("1");
+		record.setCreatedAt(createdAt);
+		return record;
+	}
+
+	private CustomerOrder order(String id) {
+		executions.incrementAndGet();
+		CustomerOrder order = new CustomerOrder();
+		order.setId(id);
+		return order;
+	}
+}
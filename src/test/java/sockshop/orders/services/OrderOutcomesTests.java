@@ -0,0 +1,90 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import sockshop.orders.services.OrderOutcomes.Outcome;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderOutcomesTests {
+
+	private final OrderOutcomes outcomes = new OrderOutcomes();
+
+	private final long now = 1_700_000_000L;
+
+	@Test
+	void currentSecondIsExcludedFromRates() {
+		outcomes.record(Outcome.SUCCESS, now);
+
+		assertThat(outcomes.rates(Duration.ofSeconds(10), now).get(Outcome.SUCCESS)).isZero();
+		assertThat(outcomes.rates(Duration.ofSeconds(10), now + 1).get(Outcome.SUCCESS)).isEqualTo(0.1);
+	}
+
+	@Test
+	void ratesAverageOverTheWindow() {
+		for (int i = 0; i < 3; i++) {
+			outcomes.record(Outcome.SUCCESS, now - 1);
+		}
+		outcomes.record(Outcome.SUCCESS, now - 5);
+		outcomes.record(Outcome.DECLINED, now - 5);
+
+		Map<Outcome, Double> lastTwoSeconds = outcomes.rates(Duration.ofSeconds(2), now);
+		assertThat(lastTwoSeconds.get(Outcome.SUCCESS)).isEqualTo(1.5);
+		assertThat(lastTwoSeconds.get(Outcome.DECLINED)).isZero();
+
+		Map<Outcome, Double> lastTenSeconds = outcomes.rates(Duration.ofSeconds(10), now);
+		assertThat(lastTenSeconds.get(Outcome.SUCCESS)).isEqualTo(0.4);
+		assertThat(lastTenSeconds.get(Outcome.DECLINED)).isEqualTo(0.1);
+		assertThat(lastTenSeconds.get(Outcome.TIMEOUT)).isZero();
+	}
+
+	@Test
+	void windowIsCappedAtFifteenMinutes() {
+		outcomes.record(Outcome.SUCCESS, now - 1);
+
+		assertThat(outcomes.rates(Duration.ofHours(1), now).get(Outcome.SUCCESS))
+				.isEqualTo(1.0 / OrderOutcomes.WINDOW_SECONDS);
+	}
+
+	@Test
+	void reusedBucketStartsFromZero() {
+		for (int i = 0; i < 5; i++) {
+			outcomes.record(Outcome.SUCCESS, now);
+		}
+		// Même seau, un tour de fenêtre plus tard
+		long later = now + OrderOutcomes.WINDOW_SECONDS + 1;
+		outcomes.record(Outcome.SUCCESS, later);
+
+		assertThat(outcomes.rates(Duration.ofSeconds(1), later + 1).get(Outcome.SUCCESS)).isEqualTo(1.0);
+		assertThat(outcomes.total(Outcome.SUCCESS)).isEqualTo(6);
+	}
+
+	@Test
+	void staleBucketIsIgnored() {
+		outcomes.record(Outcome.SUCCESS, now);
+
+		// La fenêtre couvre la seconde qui réutilisera le seau de now, pas encore réécrit
+		long later = now + OrderOutcomes.WINDOW_SECONDS + 2;
+		assertThat(outcomes.rates(Duration.ofSeconds(OrderOutcomes.WINDOW_SECONDS), later).get(Outcome.SUCCESS))
+				.isZero();
+	}
+
+	@Test
+	void totalsAreExportedAsCounters() {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ReflectionTestUtils.setField(outcomes, "meterRegistry", meterRegistry);
+		outcomes.initMetrics();
+
+		outcomes.record(Outcome.TIMEOUT);
+		outcomes.record(Outcome.TIMEOUT);
+
+		assertThat(meterRegistry.get("orders_outcomes_total").tag("outcome", "timeout").functionCounter().count())
+				.isEqualTo(2);
+		assertThat(outcomes.totals()).containsEntry(Outcome.TIMEOUT, 2L).containsEntry(Outcome.SUCCESS, 0L);
+	}
+}
@@ -0,0 +1,162 @@
+package sockshop.orders.services;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.result.InsertManyResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import sockshop.orders.entities.CustomerOrder;
+import sockshop.orders.repositories.OrderRollup;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderPersistenceTests {
+
+	private static final WriteConcern STRICT = WriteConcern.MAJORITY.withJournal(true);
+
+	@SuppressWarnings("unchecked")
+	private final MongoCollection<Document> orders = mock(MongoCollection.class);
+
+	@SuppressWarnings("unchecked")
+	private final MongoCollection<Document> rollup = mock(MongoCollection.class);
+
+	private final ReactiveMongoTemplate reactiveMongoTemplate = mock(ReactiveMongoTemplate.class);
+
+	private final OrderRollup orderRollup = mock(OrderRollup.class);
+
+	private MongoTemplate mongoTemplate;
+
+	private OrderPersistence persistence;
+
+	@BeforeEach
+	void setUp() {
+		MongoDatabaseFactory databaseFactory = mock(MongoDatabaseFactory.class);
+		MongoDatabase database = mock(MongoDatabase.class);
+		when(databaseFactory.getMongoDatabase()).thenReturn(database);
+		when(databaseFactory.getMongoDatabase(anyString())).thenReturn(database);
+		when(databaseFactory.getCodecRegistry()).thenReturn(MongoClientSettings.getDefaultCodecRegistry());
+		when(databaseFactory.getExceptionTranslator()).thenReturn(mock(PersistenceExceptionTranslator.class));
+		when(database.getCollection(eq("CustomerOrder"), eq(Document.class))).thenReturn(orders);
+		when(database.getCollection(eq("OrderRollup"), eq(Document.class))).thenReturn(rollup);
+		for (MongoCollection<Document> collection : List.of(orders, rollup)) {
+			when(collection.withWriteConcern(any())).thenReturn(collection);
+			when(collection.insertMany(anyList())).thenReturn(mock(InsertManyResult.class));
+		}
+		mongoTemplate = new MongoTemplate(databaseFactory);
+	}
+
+	@AfterEach
+	void stop() {
+		if (persistence != null) {
+			persistence.stop();
+		}
+	}
+
+	@Test
+	void batchInsertUsesTheModeWriteConcern() {
+		init("strict");
+
+		// Comme SimpleMongoRepository.insert(Iterable) : insertMany sans type d'entité dans la MongoAction
+		mongoTemplate.insert(List.of(order(), order()), "CustomerOrder");
+
+		verify(orders).withWriteConcern(STRICT);
+	}
+
+	@Test
+	void groupCommitInsertUsesTheStrictWriteConcern() {
+		init("group-commit");
+
+		mongoTemplate.insert(List.of(order(), order()), "CustomerOrder");
+
+		verify(orders).withWriteConcern(STRICT);
+	}
+
+	@Test
+	void fastModeDoesNotWaitForTheJournal() {
+		init("fast");
+
+		mongoTemplate.insert(List.of(order()), "CustomerOrder");
+
+		verify(orders).withWriteConcern(WriteConcern.W1.withJournal(false));
+	}
+
+	@Test
+	void otherCollectionsKeepTheClientWriteConcern() {
+		init("strict");
+
+		mongoTemplate.insert(List.of(new Document("_id", new ObjectId())), "OrderRollup");
+
+		verify(rollup, never()).withWriteConcern(any());
+	}
+
+	@Test
+	void defaultModeKeepsTheClientWriteConcern() {
+		init("default");
+
+		mongoTemplate.insert(List.of(order()), "CustomerOrder");
+
+		verify(orders, never()).withWriteConcern(any());
+	}
+
+	@Test
+	void reactiveSaveGoesThroughTheReactiveTemplateAndTheRollup() {
+		CustomerOrder order = order();
+		when(reactiveMongoTemplate.save(order)).thenReturn(Mono.just(order));
+		when(orderRollup.recordedReactive(List.of(order))).thenReturn(Mono.empty());
+		init("strict");
+
+		assertThat(persistence.saveReactive(order).block()).isSameAs(order);
+
+		verify(orderRollup).recordedReactive(List.of(order));
+		verify(orders, never()).insertMany(anyList());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void init(String mode) {
+		ObjectProvider<ReactiveMongoTemplate> reactive = mock(ObjectProvider.class);
+		when(reactive.getObject()).thenReturn(reactiveMongoTemplate);
+		persistence = new OrderPersistence();
+		ReflectionTestUtils.setField(persistence, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(persistence, "reactiveMongoTemplate", reactive);
+		ReflectionTestUtils.setField(persistence, "shipmentOutbox", mock(ShipmentOutbox.class));
+		ReflectionTestUtils.setField(persistence, "orderRollup", orderRollup);
+		ReflectionTestUtils.setField(persistence, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(persistence, "mode", mode);
+		ReflectionTestUtils.setField(persistence, "window", Duration.ofMillis(2));
+		ReflectionTestUtils.setField(persistence, "maxBatchSize", 64);
+		ReflectionTestUtils.setField(persistence, "queueCapacity", 16);
+		persistence.init();
+	}
+
+	private static CustomerOrder order() {
+		CustomerOrder order = new CustomerOrder();
+		order.setId(new ObjectId().toHexString());
+		order.setCustomerId("customer-1");
+		return order;
+	}
+}
@@ -0,0 +1,131 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestHedgingTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private RequestHedging hedging;
+
+	@BeforeEach
+	void setUp() {
+		// Budget : une demi-requête de secours par requête, réserve d'une seule
+		hedging = hedging(true, 0.5, 1);
+	}
+
+	@AfterEach
+	void tearDown() {
+		hedging.shutdown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void noHedgeDelayBeforeEnoughSamples() throws Exception {
+		call(49, () -> "ok");
+		assertThat(hedgeDelay()).isEqualTo(-1);
+
+		// Recalculé à la 64e mesure : latences quasi nulles, le seuil tombe à min-delay
+		call(15, () -> "ok");
+		assertThat(hedgeDelay()).isEqualTo(0.02);
+	}
+
+	@Test
+	void hedgeAnswersWhenThePrimaryIsSlow() throws Exception {
+		call(64, () -> "ok");
+		AtomicInteger attempts = new AtomicInteger();
+
+		String result = hedging.supplyAsync(Upstream.CUSTOMER, () -> {
+			if (attempts.incrementAndGet() == 1) {
+				sleep(1000);
+				return "primary";
+			}
+			return "hedge";
+		}, executor).get(500, TimeUnit.MILLISECONDS);
+
+		assertThat(result).isEqualTo("hedge");
+		assertThat(hedges("sent")).isEqualTo(1);
+		assertThat(hedges("won")).isEqualTo(1);
+	}
+
+	@Test
+	void hedgesAreCappedByTheBudget() throws Exception {
+		call(64, () -> "ok");
+		Supplier<String> slow = () -> {
+			sleep(200);
+			return "ok";
+		};
+
+		// Réserve pleine : un secours, puis une demi-requête de budget seulement, puis de nouveau un secours
+		call(1, slow);
+		assertThat(hedges("sent")).isEqualTo(1);
+		call(1, slow);
+		assertThat(hedges("sent")).isEqualTo(1);
+		assertThat(hedges("over_budget")).isEqualTo(1);
+		call(1, slow);
+		assertThat(hedges("sent")).isEqualTo(2);
+	}
+
+	@Test
+	void disabledHedgingCallsOnce() throws Exception {
+		hedging.shutdown();
+		hedging = hedging(false, 0.5, 1);
+		AtomicInteger attempts = new AtomicInteger();
+
+		call(100, attempts::incrementAndGet);
+
+		assertThat(attempts.get()).isEqualTo(100);
+	}
+
+	private RequestHedging hedging(boolean enabled, double budgetRatio, int maxBurst) {
+		RequestHedging hedging = new RequestHedging();
+		ReflectionTestUtils.setField(hedging, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(hedging, "enabled", enabled);
+		ReflectionTestUtils.setField(hedging, "percentile", 95.0);
+		ReflectionTestUtils.setField(hedging, "minDelay", Duration.ofMillis(20));
+		ReflectionTestUtils.setField(hedging, "budgetRatio", budgetRatio);
+		ReflectionTestUtils.setField(hedging, "maxBurst", maxBurst);
+		ReflectionTestUtils.setField(hedging, "windowSize", 512);
+		hedging.init();
+		return hedging;
+	}
+
+	private void call(int times, Supplier<?> supplier) throws Exception {
+		for (int i = 0; i < times; i++) {
+			hedging.supplyAsync(Upstream.CUSTOMER, supplier, executor).get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	private double hedgeDelay() {
+		return meterRegistry.get("orders_upstream_hedge_delay").tag("dependency", Upstream.CUSTOMER.getTag())
+				.gauge().value();
+	}
+
+	private double hedges(String result) {
+		return meterRegistry.get("orders_upstream_hedges")
+				.tags("dependency", Upstream.CUSTOMER.getTag(), "result", result).counter().count();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package sockshop.orders.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import sockshop.orders.services.ResourceCache.CachedResource;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResourceCacheTests {
+
+	private static final URI CUSTOMER = URI.create("http://user/customers/1");
+
+	private static final Duration REVALIDATE_AFTER = Duration.ofMillis(50);
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	// Entrée reçue par chaque appel du fetcher (null = premier chargement)
+	private final List<CachedResource> fetches = new ArrayList<>();
+
+	@Test
+	void concurrentLoadsShareOneUpstreamCall() {
+		ResourceCache cache = cache(Duration.ofSeconds(30));
+		CompletableFuture<CachedResource> upstream = new CompletableFuture<>();
+
+		CompletableFuture<CachedResource> first = cache.get(CUSTOMER, stale -> fetch(stale, upstream));
+		CompletableFuture<CachedResource> second = cache.get(CUSTOMER, stale -> fetch(stale, upstream));
+		upstream.complete(new CachedResource("customer", "\"v1\""));
+
+		assertThat(fetches).hasSize(1);
+		assertThat(second.join()).isSameAs(first.join());
+	}
+
+	@Test
+	void freshEntryIsServedWithoutRevalidation() {
+		ResourceCache cache = cache(Duration.ofSeconds(30));
+		cache.get(CUSTOMER, stale -> fetch(stale, new CachedResource("customer", "\"v1\""))).join();
+
+		cache.get(CUSTOMER, stale -> fetch(stale, new CachedResource("other", "\"v2\""))).join();
+
+		assertThat(fetches).containsExactly((CachedResource) null);
+	}
+
+	@Test
+	void staleEntryIsRevalidatedWithItsEtag() throws Exception {
+		ResourceCache cache = cache(REVALIDATE_AFTER);
+		CachedResource cached = cache.get(CUSTOMER, stale -> fetch(stale, new CachedResource("customer", "\"v1\""))).join();
+		Thread.sleep(60);
+
+		// 304 : même contenu
+		CachedResource revalidated = cache.get(CUSTOMER, stale -> fetch(stale, stale.revalidated())).join();
+
+		assertThat(fetches).containsExactly(null, cached);
+		assertThat(revalidated.getBody()).isSameAs(cached.getBody());
+		assertThat(revalidations("not_modified")).isEqualTo(1);
+
+		Thread.sleep(60);
+		CachedResource modified = cache.get(CUSTOMER, stale -> fetch(stale, new CachedResource("changed", "\"v2\""))).join();
+
+		assertThat(modified.getBody()).isEqualTo("changed");
+		assertThat(revalidations("modified")).isEqualTo(1);
+		assertThat(cache.get(CUSTOMER, stale -> fetch(stale, stale)).join()).isSameAs(modified);
+	}
+
+	@Test
+	void entryWithoutEtagIsNotRevalidated() throws Exception {
+		ResourceCache cache = cache(REVALIDATE_AFTER);
+		cache.get(CUSTOMER, stale -> fetch(stale, new CachedResource("customer", null))).join();
+		Thread.sleep(60);
+
+		cache.get(CUSTOMER, stale -> fetch(stale, new CachedResource("other", null))).join();
+
+		assertThat(fetches).hasSize(1);
+	}
+
+	@Test
+	void revalidationCanBeDisabled() throws Exception {
+		ResourceCache cache = cache(Duration.ZERO);
+		cache.get(CUSTOMER, stale -> fetch(stale, new CachedResource("customer", "\"v1\""))).join();
+		Thread.sleep(60);
+
+		cache.get(CUSTOMER, stale -> fetch(stale, new CachedResource("other", "\"v2\""))).join();
+
+		assertThat(fetches).hasSize(1);
+	}
+
+	@Test
+	void failedRevalidationIsNotCached() throws Exception {
+		ResourceCache cache = cache(REVALIDATE_AFTER);
+		cache.get(CUSTOMER, stale -> fetch(stale, new CachedResource("customer", "\"v1\""))).join();
+		Thread.sleep(60);
+
+		CompletableFuture<CachedResource> failed = cache.get(CUSTOMER,
+				stale -> fetch(stale, CompletableFuture.failedFuture(new IllegalStateException("user service down"))));
+		assertThat(failed).isCompletedExceptionally();
+
+		CachedResource reloaded = cache.get(CUSTOMER, stale -> fetch(stale, new CachedResource("customer", "\"v1\""))).join();
+
+		assertThat(reloaded.getBody()).isEqualTo("customer");
+		assertThat(fetches).hasSize(3).endsWith((CachedResource) null);
+	}
+
+	private ResourceCache cache(Duration revalidateAfter) {
+		ResourceCache cache = new ResourceCache();
+		ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(cache, "enabled", true);
+		ReflectionTestUtils.setField(cache, "maximumSize", 100L);
+		ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(5));
+		ReflectionTestUtils.setField(cache, "revalidateAfter", revalidateAfter);
+		cache.init();
+		return cache;
+	}
+
+	private CompletableFuture<CachedResource> fetch(CachedResource stale, CachedResource result) {
+		return fetch(stale, CompletableFuture.completedFuture(result));
+	}
+
+	private CompletableFuture<CachedResource> fetch(CachedResource stale, CompletableFuture<CachedResource> result) {
+		fetches.add(stale);
+		return result;
+	}
+
+	private double revalidations(String result) {
+		return meterRegistry.get("orders_resource_cache_revalidations").tag("result", result).counter().count();
+	}
+}